@@ -0,0 +1,66 @@
+package be.intimals.htmlviewer.benchmarks;
+
+import be.intimals.htmlviewer.HTMLViewer;
+import be.intimals.htmlviewer.ViewerOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * generate all pages of synthetic results, as Main does without opening the browser
+ *
+ * the snapshot of the results and the span files are written by the first generation
+ * and reused by the next ones, like successive runs of the viewer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"10", "100"})
+    public int patterns;
+
+    //functions of a source file, 6 lines each
+    @Param({"10", "200"})
+    public int functions;
+
+    //options of the viewer, separated by spaces
+    @Param({"", "--single-page", "--context 3"})
+    public String options;
+
+    private File root;
+    private File htmlDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("htmlviewer-bench").toFile();
+        new SyntheticResults().patterns(patterns).files(10).functions(functions).matchRate(5.0 / functions)
+                .twoClass(true).write(root);
+        htmlDir = new File(SyntheticResults.resultDir(root), "html");
+    }
+
+    @Setup(Level.Invocation)
+    public void clean(){
+        SyntheticResults.delete(htmlDir);
+        htmlDir.mkdir();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        SyntheticResults.delete(root);
+    }
+
+    @Benchmark
+    public boolean generate(){
+        String[] args = options.isEmpty() ? new String[0] : options.split(" ");
+        HTMLViewer viewer = new HTMLViewer(SyntheticResults.sourceDir(root), SyntheticResults.resultDir(root), htmlDir,
+                ViewerOptions.parse(args));
+        return viewer.generate();
+    }
+
+}
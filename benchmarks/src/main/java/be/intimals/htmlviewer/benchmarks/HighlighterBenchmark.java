@@ -0,0 +1,77 @@
+package be.intimals.htmlviewer.benchmarks;
+
+import be.intimals.htmlviewer.Highlighter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static be.intimals.htmlviewer.Variables.*;
+
+/**
+ * mark the variables and keywords of the lines of a generated function, the work done by the former
+ * addMarkerToVariable, addMarkerToKeyword and findIdentifierIndex: spans are added to a Highlighter,
+ * keywords are found by scanning the identifiers of the line, and the marked line is rendered
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HighlighterBenchmark {
+
+    //lines of a function written by SyntheticResults
+    private static final String[] LINES = {
+            "def func0(a, b):",
+            "    \"\"\"doc for func0\"\"\"",
+            "    if a < b and True:",
+            "        return a = b",
+            "    try: x = 1",
+            "print(x)"
+    };
+    //matched variable of each line: first column, column after the last one
+    private static final int[][] VARIABLES = {{4, 9}, {4, 23}, {7, 8}, {15, 16}, {9, 10}, {6, 7}};
+
+    private Highlighter highlighter = new Highlighter();
+    private StringBuilder out = new StringBuilder();
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public int markVariables(){
+        out.setLength(0);
+        for(int i = 0; i < LINES.length; ++i){
+            highlighter.clear();
+            highlighter.add(VARIABLES[i][0], VARIABLES[i][1], Highlighter.VARIABLE,
+                    LINES[i].substring(VARIABLES[i][0], VARIABLES[i][1]));
+            highlighter.render(LINES[i], out);
+        }
+        return out.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public int markKeywords(){
+        out.setLength(0);
+        for(String line : LINES){
+            highlighter.clear();
+            highlighter.addKeywords(line, keywords);
+            highlighter.render(line, out);
+        }
+        return out.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public int markLines(){
+        out.setLength(0);
+        for(int i = 0; i < LINES.length; ++i){
+            highlighter.clear();
+            highlighter.add(VARIABLES[i][0], VARIABLES[i][1], Highlighter.VARIABLE,
+                    LINES[i].substring(VARIABLES[i][0], VARIABLES[i][1]));
+            highlighter.addKeywords(LINES[i], keywords);
+            highlighter.render(LINES[i], out);
+        }
+        return out.length();
+    }
+
+}
@@ -0,0 +1,102 @@
+package be.intimals.htmlviewer.benchmarks;
+
+import be.intimals.htmlviewer.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static be.intimals.htmlviewer.Utils.*;
+
+/**
+ * render the matches of synthetic results: finding the lines and columns of the nodes of a match
+ * (findLineAndCol, run by the MatchRenderer constructor) and adding the markers to the source lines
+ *
+ * each invocation renders the next match, so that all matches of the results are measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchRendererBenchmark {
+
+    //functions of a source file, 6 lines each
+    @Param({"10", "1000"})
+    public int functions;
+
+    private File root;
+    private SourceFile[] sourceFiles;
+    private int[][] nodeIDs;
+    private MatchRenderer[] renderers;
+    private int next;
+    //marked lines, reused by all invocations
+    private StringBuilder out = new StringBuilder();
+
+    @Setup
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("htmlviewer-bench").toFile();
+        new SyntheticResults().patterns(10).files(4).functions(functions).matchRate(10.0 / functions).write(root);
+        ResultModel model = load(root);
+        MatchSet matchSet = model.getMatchSets().get(0);
+        sourceFiles = new SourceFile[matchSet.size()];
+        nodeIDs = new int[matchSet.size()][];
+        renderers = new MatchRenderer[matchSet.size()];
+        Map<String, SourceFile> files = new HashMap<>();
+        for(int match = 0; match < matchSet.size(); ++match){
+            String pyFileName = matchSet.getSourceDir()+"/"+getFileName(matchSet.getFullName(match));
+            sourceFiles[match] = files.computeIfAbsent(pyFileName,
+                    fileName -> SourceFile.read(fileName, PageRenderer.xmlFileName(fileName), null));
+            nodeIDs[match] = matchSet.getNodeIDs(match);
+            renderers[match] = new MatchRenderer(sourceFiles[match], nodeIDs[match]);
+        }
+    }
+
+    /**
+     * load the results of a directory written by SyntheticResults
+     * @param root
+     * @return
+     * @throws Exception
+     */
+    static ResultModel load(File root) throws Exception {
+        File res = SyntheticResults.resultDir(root);
+        Config config = new Config(getConfigFileName(res));
+        return ResultModel.load(config, SyntheticResults.sourceDir(root).getAbsolutePath(), res.getAbsolutePath());
+    }
+
+    @TearDown
+    public void tearDown(){
+        SyntheticResults.delete(root);
+    }
+
+    private int nextMatch(){
+        if(next == renderers.length) next = 0;
+        return next++;
+    }
+
+    @Benchmark
+    public MatchRenderer findLineAndCol(){
+        int match = nextMatch();
+        return new MatchRenderer(sourceFiles[match], nodeIDs[match]);
+    }
+
+    @Benchmark
+    public int addMarkers() throws IOException {
+        out.setLength(0);
+        renderers[nextMatch()].addMarkers(out);
+        return out.length();
+    }
+
+    @Benchmark
+    public int addMarkersContext() throws IOException {
+        out.setLength(0);
+        renderers[nextMatch()].addMarkers(out, 3);
+        return out.length();
+    }
+
+}
@@ -0,0 +1,250 @@
+package be.intimals.htmlviewer.benchmarks;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * run the viewer on synthetic results of increasing sizes and chart time and peak heap against input size
+ *
+ * the results of scale k have k times the patterns and source files of scale 1, the match rate
+ * and the size of the source files don't change, so the number of matches grows like k^2.
+ * Each size is generated twice in a new JVM: a cold run parsing the result and XML files,
+ * then a warm run reading the snapshot of the results and the span files written by the cold run.
+ * The results are written to OUT/scaling.csv and OUT/scaling.svg.
+ */
+public class ScalingHarness {
+
+    private int[] scales = {1, 10, 100};
+    private int patterns = 10;
+    private int files = 5;
+    private int functions = 20;
+    private double matchRate = 0.05;
+    private boolean twoClass = true;
+    private String maxHeap = null;
+    private List<String> viewerOptions = new ArrayList<>();
+    private File out = new File("scaling");
+
+    //one line of the report
+    private static class Row {
+        int scale;
+        int matches;
+        double inputMB;
+        String run;
+        long millis;
+        double peakHeapMB;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ScalingHarness harness = new ScalingHarness();
+        try {
+            harness.parse(args);
+        }catch (IllegalArgumentException e){
+            System.out.println(e.getMessage());
+            printUsage();
+            System.exit(-1);
+        }
+        harness.run();
+    }
+
+    private static void printUsage(){
+        System.out.println("Usage:");
+        System.out.println("java -cp benchmarks.jar " + ScalingHarness.class.getName() + " [OPTIONS] [-- VIEWER OPTIONS]");
+        System.out.println("--scales K,K,...  scale factors of the results (default 1,10,100)");
+        System.out.println("--patterns N      number of patterns at scale 1 (default 10)");
+        System.out.println("--files N         number of source files of each class at scale 1 (default 5)");
+        System.out.println("--functions N     number of functions of a source file, 6 lines each (default 20)");
+        System.out.println("--match-rate R    probability that a pattern matches a function (default 0.05)");
+        System.out.println("--one-class       matches of one class instead of two");
+        System.out.println("--xmx SIZE        maximum heap of the viewer JVM, e.g. 2g (default: JVM default)");
+        System.out.println("--out DIR         directory of the results and reports (default scaling)");
+    }
+
+    private void parse(String[] args){
+        for(int i = 0; i < args.length; ++i){
+            String arg = args[i];
+            if(arg.equals("--")){
+                //the next arguments are options of the viewer
+                for(++i; i < args.length; ++i) viewerOptions.add(args[i]);
+                break;
+            }
+            if(arg.equals("--one-class")){
+                twoClass = false;
+                continue;
+            }
+            if(i + 1 == args.length) throw new IllegalArgumentException("missing value of " + arg);
+            String value = args[++i];
+            try {
+                switch (arg){
+                    case "--scales":
+                        String[] values = value.split(",");
+                        scales = new int[values.length];
+                        for(int k = 0; k < values.length; ++k) scales[k] = Integer.parseInt(values[k].trim());
+                        break;
+                    case "--patterns": patterns = Integer.parseInt(value); break;
+                    case "--files": files = Integer.parseInt(value); break;
+                    case "--functions": functions = Integer.parseInt(value); break;
+                    case "--match-rate": matchRate = Double.parseDouble(value); break;
+                    case "--xmx": maxHeap = value; break;
+                    case "--out": out = new File(value); break;
+                    default: throw new IllegalArgumentException("unknown option " + arg);
+                }
+            }catch (NumberFormatException e){
+                throw new IllegalArgumentException("wrong value of " + arg + ": " + value);
+            }
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        out.mkdirs();
+        List<Row> rows = new ArrayList<>();
+        for(int scale : scales){
+            File root = new File(out, "scale_" + scale);
+            SyntheticResults.delete(root);
+            int matches = new SyntheticResults().patterns(patterns * scale).files(files * scale).functions(functions)
+                    .matchRate(matchRate).twoClass(twoClass).write(root);
+            double inputMB = size(root.toPath()) / 1e6;
+            System.out.println(String.format(Locale.ROOT, "scale %d: %d matches, %.1f MB of input", scale, matches, inputMB));
+            for(String run : new String[]{"cold", "warm"}){
+                Row row = runViewer(root, new File(out, "scale_" + scale + "_" + run + ".log"));
+                row.scale = scale;
+                row.matches = matches;
+                row.inputMB = inputMB;
+                row.run = run;
+                rows.add(row);
+                System.out.println(String.format(Locale.ROOT, "  %s run: %d ms, peak heap %.1f MB", run, row.millis, row.peakHeapMB));
+            }
+            //keep the inputs of the last scale only, the largest ones
+            if(scale != scales[scales.length - 1]) SyntheticResults.delete(root);
+        }
+        writeCsv(rows, new File(out, "scaling.csv"));
+        writeSvg(rows, new File(out, "scaling.svg"));
+        System.out.println("reports written to " + new File(out, "scaling.csv") + " and " + new File(out, "scaling.svg"));
+    }
+
+    private static long size(Path dir) throws IOException {
+        try(java.util.stream.Stream<Path> paths = Files.walk(dir)){
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    /**
+     * generate the pages of a result directory in a new JVM
+     * @param root : directory written by SyntheticResults
+     * @param log : receives the output of the JVM
+     * @return time and peak heap of the run
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private Row runViewer(File root, File log) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        if(maxHeap != null) command.add("-Xmx" + maxHeap);
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ScalingRun.class.getName());
+        command.add(SyntheticResults.sourceDir(root).getPath());
+        command.add(SyntheticResults.resultDir(root).getPath());
+        command.addAll(viewerOptions);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+        int exit = process.waitFor();
+        for(String line : Files.readAllLines(log.toPath(), StandardCharsets.UTF_8)){
+            if(!line.startsWith(ScalingRun.RESULT_PREFIX)) continue;
+            String[] values = line.substring(ScalingRun.RESULT_PREFIX.length()).split(" ");
+            Row row = new Row();
+            row.millis = Long.parseLong(values[0]);
+            row.peakHeapMB = Long.parseLong(values[1]) / 1e6;
+            return row;
+        }
+        throw new IOException("run failed with exit code " + exit + ", see " + log);
+    }
+
+    private static void writeCsv(List<Row> rows, File file) throws IOException {
+        try(Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)){
+            writer.write("scale,matches,input_mb,run,time_ms,peak_heap_mb\n");
+            for(Row row : rows){
+                writer.write(String.format(Locale.ROOT, "%d,%d,%.3f,%s,%d,%.1f\n",
+                        row.scale, row.matches, row.inputMB, row.run, row.millis, row.peakHeapMB));
+            }
+        }
+    }
+
+    //size of a chart of the SVG report
+    private static final int WIDTH = 560;
+    private static final int HEIGHT = 360;
+    private static final int MARGIN = 60;
+
+    /**
+     * write two log-log charts: time and peak heap against input size, one line for cold runs and one for warm runs
+     * @param rows
+     * @param file
+     * @throws IOException
+     */
+    private static void writeSvg(List<Row> rows, File file) throws IOException {
+        try(Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)){
+            writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + (2 * WIDTH) + "\" height=\"" + HEIGHT +
+                    "\" font-family=\"sans-serif\" font-size=\"12\">\n");
+            writeChart(writer, rows, 0, "time (ms)", true);
+            writeChart(writer, rows, WIDTH, "peak heap (MB)", false);
+            writer.write("</svg>\n");
+        }
+    }
+
+    private static double value(Row row, boolean time){
+        return time ? Math.max(row.millis, 1) : Math.max(row.peakHeapMB, 0.1);
+    }
+
+    private static void writeChart(Writer writer, List<Row> rows, int x0, String title, boolean time) throws IOException {
+        double minX = Double.MAX_VALUE, maxX = 0, minY = Double.MAX_VALUE, maxY = 0;
+        for(Row row : rows){
+            minX = Math.min(minX, Math.max(row.inputMB, 0.001));
+            maxX = Math.max(maxX, Math.max(row.inputMB, 0.001));
+            minY = Math.min(minY, value(row, time));
+            maxY = Math.max(maxY, value(row, time));
+        }
+        //log scales on whole powers of ten
+        double fromX = Math.floor(Math.log10(minX)), toX = Math.max(Math.ceil(Math.log10(maxX)), fromX + 1);
+        double fromY = Math.floor(Math.log10(minY)), toY = Math.max(Math.ceil(Math.log10(maxY)), fromY + 1);
+        int left = x0 + MARGIN, right = x0 + WIDTH - 20, top = 30, bottom = HEIGHT - MARGIN;
+        writer.write("<text x=\"" + (x0 + WIDTH / 2) + "\" y=\"18\" text-anchor=\"middle\" font-weight=\"bold\">" +
+                title + " against input size (MB), log-log</text>\n");
+        writer.write("<rect x=\"" + left + "\" y=\"" + top + "\" width=\"" + (right - left) + "\" height=\"" + (bottom - top) +
+                "\" fill=\"none\" stroke=\"#808080\"/>\n");
+        for(double e = fromX; e <= toX; ++e){
+            double x = left + (e - fromX) / (toX - fromX) * (right - left);
+            writer.write(String.format(Locale.ROOT, "<line x1=\"%.1f\" y1=\"%d\" x2=\"%.1f\" y2=\"%d\" stroke=\"#E0E0E0\"/>\n", x, top, x, bottom));
+            writer.write(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%d\" text-anchor=\"middle\">%s</text>\n", x, bottom + 16, label(e)));
+        }
+        for(double e = fromY; e <= toY; ++e){
+            double y = bottom - (e - fromY) / (toY - fromY) * (bottom - top);
+            writer.write(String.format(Locale.ROOT, "<line x1=\"%d\" y1=\"%.1f\" x2=\"%d\" y2=\"%.1f\" stroke=\"#E0E0E0\"/>\n", left, y, right, y));
+            writer.write(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%.1f\" text-anchor=\"end\">%s</text>\n", left - 6, y + 4, label(e)));
+        }
+        String[] runs = {"cold", "warm"};
+        String[] colors = {"#D75E0E", "#1F77B4"};
+        for(int r = 0; r < runs.length; ++r){
+            StringBuilder points = new StringBuilder();
+            for(Row row : rows){
+                if(!row.run.equals(runs[r])) continue;
+                double x = left + (Math.log10(Math.max(row.inputMB, 0.001)) - fromX) / (toX - fromX) * (right - left);
+                double y = bottom - (Math.log10(value(row, time)) - fromY) / (toY - fromY) * (bottom - top);
+                points.append(String.format(Locale.ROOT, "%.1f,%.1f ", x, y));
+                writer.write(String.format(Locale.ROOT, "<circle cx=\"%.1f\" cy=\"%.1f\" r=\"3\" fill=\"%s\"/>\n", x, y, colors[r]));
+            }
+            writer.write("<polyline points=\"" + points.toString().trim() + "\" fill=\"none\" stroke=\"" + colors[r] + "\"/>\n");
+            writer.write("<text x=\"" + (left + 10) + "\" y=\"" + (top + 16 + 14 * r) + "\" fill=\"" + colors[r] + "\">" +
+                    runs[r] + " run</text>\n");
+        }
+    }
+
+    private static String label(double exponent){
+        double value = Math.pow(10, exponent);
+        return value >= 1 ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+}
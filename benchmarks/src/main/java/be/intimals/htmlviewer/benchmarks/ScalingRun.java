@@ -0,0 +1,46 @@
+package be.intimals.htmlviewer.benchmarks;
+
+import be.intimals.htmlviewer.HTMLViewer;
+import be.intimals.htmlviewer.ViewerOptions;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+
+/**
+ * one generation of the scaling harness, run in its own JVM so that its peak heap is not shared with other runs
+ *
+ * prints a line "scaling-run: TIME_MS PEAK_HEAP_BYTES CREATED"
+ */
+public class ScalingRun {
+
+    //prefix of the line read by the harness
+    static final String RESULT_PREFIX = "scaling-run: ";
+
+    /**
+     * @param args : SOURCE_DIR RESULT_DIR [VIEWER OPTIONS]
+     */
+    public static void main(String[] args){
+        File src = new File(args[0]);
+        File res = new File(args[1]);
+        ViewerOptions options = ViewerOptions.parse(Arrays.copyOfRange(args, 2, args.length));
+        File html = new File(res, "html");
+        SyntheticResults.delete(html);
+        html.mkdir();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        boolean created = new HTMLViewer(src, res, html, options).generate();
+        long millis = (System.nanoTime() - start) / 1000000;
+        //sum of the peaks of the heap pools, an upper bound of the peak of the whole heap
+        long peakHeap = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+        }
+        System.out.println(RESULT_PREFIX + millis + " " + peakHeap + " " + created);
+    }
+
+}
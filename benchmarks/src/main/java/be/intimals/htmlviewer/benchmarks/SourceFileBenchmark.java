@@ -0,0 +1,57 @@
+package be.intimals.htmlviewer.benchmarks;
+
+import be.intimals.htmlviewer.SourceFile;
+import be.intimals.htmlviewer.SpanCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * read a Python file and index its XML file: parsing the XML file (Utils.readXML) against mapping its span file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceFileBenchmark {
+
+    //functions of the source file, 6 lines each
+    @Param({"10", "1000"})
+    public int functions;
+
+    private File root;
+    private String pyFile;
+    private String xmlFile;
+    private SpanCache spanCache;
+
+    @Setup
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("htmlviewer-bench").toFile();
+        new SyntheticResults().patterns(1).files(1).functions(functions).write(root);
+        File src = SyntheticResults.sourceDir(root);
+        pyFile = new File(src, "f0.py").getPath();
+        xmlFile = new File(src, "f0.xml").getPath();
+        spanCache = new SpanCache(new File(root, "spans"));
+        spanCache.prepare(xmlFile);
+    }
+
+    @TearDown
+    public void tearDown(){
+        SyntheticResults.delete(root);
+    }
+
+    @Benchmark
+    public SourceFile readXML(){
+        return SourceFile.read(pyFile, xmlFile, null);
+    }
+
+    @Benchmark
+    public SourceFile mapSpans(){
+        return SourceFile.read(pyFile, xmlFile, spanCache);
+    }
+
+}
@@ -0,0 +1,295 @@
+package be.intimals.htmlviewer.benchmarks;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * generate synthetic FREQTALS results: Python files with their AST XML files,
+ * patterns, matches, clusters and the configuration file of the run
+ *
+ * the number of patterns, the number and size of the source files and the share of
+ * functions matched by each pattern can be scaled independently. The same seed
+ * always generates the same results.
+ */
+public class SyntheticResults {
+
+    //lines of a generated function
+    private static final int FUNCTION_LINES = 6;
+
+    private int nbPatterns = 12;
+    private int nbFiles = 6;
+    private int nbFunctions = 4;
+    private double matchRate = 0.3;
+    private int nbClusters = 4;
+    private int clusterSize = 4;
+    private boolean twoClass = false;
+    private long seed = 1;
+
+    private Random random;
+
+    /** number of patterns */
+    public SyntheticResults patterns(int nbPatterns){this.nbPatterns = nbPatterns; return this;}
+
+    /** number of source files of each class */
+    public SyntheticResults files(int nbFiles){this.nbFiles = nbFiles; return this;}
+
+    /** number of functions of a source file, each function has 6 lines */
+    public SyntheticResults functions(int nbFunctions){this.nbFunctions = nbFunctions; return this;}
+
+    /** probability that a pattern matches a function */
+    public SyntheticResults matchRate(double matchRate){this.matchRate = matchRate; return this;}
+
+    /** number of clusters and number of patterns of a cluster */
+    public SyntheticResults clusters(int nbClusters, int clusterSize){
+        this.nbClusters = nbClusters;
+        this.clusterSize = clusterSize;
+        return this;
+    }
+
+    /** matches of two classes, old and new */
+    public SyntheticResults twoClass(boolean twoClass){this.twoClass = twoClass; return this;}
+
+    public SyntheticResults seed(long seed){this.seed = seed; return this;}
+
+    /**
+     * write synthetic results to a directory
+     * @param args : [OPTIONS] DIR
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        SyntheticResults results = new SyntheticResults();
+        File root = null;
+        try {
+            for(int i = 0; i < args.length; ++i){
+                String arg = args[i];
+                if(!arg.startsWith("--")){
+                    if(root != null) throw new IllegalArgumentException("unexpected argument " + arg);
+                    root = new File(arg);
+                    continue;
+                }
+                if(!arg.equals("--two-class") && i + 1 == args.length) throw new IllegalArgumentException("missing value of " + arg);
+                switch (arg){
+                    case "--patterns": results.patterns(Integer.parseInt(args[++i])); break;
+                    case "--files": results.files(Integer.parseInt(args[++i])); break;
+                    case "--functions": results.functions(Integer.parseInt(args[++i])); break;
+                    case "--match-rate": results.matchRate(Double.parseDouble(args[++i])); break;
+                    case "--clusters": results.clusters(Integer.parseInt(args[++i]), results.clusterSize); break;
+                    case "--cluster-size": results.clusters(results.nbClusters, Integer.parseInt(args[++i])); break;
+                    case "--two-class": results.twoClass(true); break;
+                    case "--seed": results.seed(Long.parseLong(args[++i])); break;
+                    default: throw new IllegalArgumentException("unknown option " + arg);
+                }
+            }
+        }catch (NumberFormatException e){
+            System.out.println("wrong number: " + e.getMessage());
+            root = null;
+        }catch (IllegalArgumentException e){
+            System.out.println(e.getMessage());
+            root = null;
+        }
+        if(root == null){
+            System.out.println("Usage:");
+            System.out.println("java -cp benchmarks.jar " + SyntheticResults.class.getName() + " [OPTIONS] DIR");
+            System.out.println("write synthetic FREQTALS results: sources to DIR/src, results to DIR/res");
+            System.out.println("--patterns N      number of patterns (default 12)");
+            System.out.println("--files N         number of source files of each class (default 6)");
+            System.out.println("--functions N     number of functions of a source file, 6 lines each (default 4)");
+            System.out.println("--match-rate R    probability that a pattern matches a function (default 0.3)");
+            System.out.println("--clusters N      number of clusters (default 4)");
+            System.out.println("--cluster-size N  number of patterns of a cluster (default 4)");
+            System.out.println("--two-class       matches of two classes, old and new");
+            System.out.println("--seed N          seed of the random generator (default 1)");
+            System.exit(-1);
+        }
+        int nbMatches = results.write(root);
+        System.out.println(nbMatches + " matches written to " + resultDir(root));
+    }
+
+    public static File sourceDir(File root){return new File(root, "src");}
+
+    public static File resultDir(File root){return new File(root, "res");}
+
+    /**
+     * write the results to root/src and root/res
+     * @param root : directory receiving the results
+     * @return number of matches
+     * @throws IOException
+     */
+    public int write(File root) throws IOException {
+        random = new Random(seed);
+        File src = sourceDir(root);
+        File res = resultDir(root);
+        res.mkdirs();
+        writePatterns(new File(res, "pats.xml"));
+        String props;
+        int nbMatches;
+        if(twoClass){
+            nbMatches = writeMatches(new File(res, "m1.xml"), writeSources(new File(src, "pos")), "/orig/pos");
+            nbMatches += writeMatches(new File(res, "m2.xml"), writeSources(new File(src, "nag")), "/orig/nag");
+            writeClusters(new File(res, "m1_clusters.xml"));
+            props = "2Class=true\noutputPath=/x/pats.xml\noutputMatches1=/x/m1.xml\noutputMatches2=/x/m2.xml\n" +
+                    "inputPath1=/y/pos\ninputPath2=/y/nag\n";
+        }else{
+            nbMatches = writeMatches(new File(res, "m.xml"), writeSources(src), "/orig");
+            writeClusters(new File(res, "m_clusters.xml"));
+            props = "2Class=false\noutputPath=/x/pats.xml\noutputMatches=/x/m.xml\n";
+        }
+        try(Writer out = open(new File(res, "run.properties"))){
+            out.write(props);
+        }
+        return nbMatches;
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * write the source files of a class
+     * @param dir
+     * @return for each file name, the node IDs of each function
+     * @throws IOException
+     */
+    private Map<String, List<int[]>> writeSources(File dir) throws IOException {
+        dir.mkdirs();
+        Map<String, List<int[]>> files = new LinkedHashMap<>();
+        for(int i = 0; i < nbFiles; ++i){
+            files.put("f" + i, writeSource(dir, "f" + i));
+        }
+        return files;
+    }
+
+    /**
+     * write a Python file and its XML file
+     * @return node IDs of each function
+     * @throws IOException
+     */
+    private List<int[]> writeSource(File dir, String name) throws IOException {
+        List<int[]> functions = new ArrayList<>();
+        int nextID = 1;
+        try(Writer py = open(new File(dir, name + ".py")); Writer xml = open(new File(dir, name + ".xml"))){
+            xml.write("<Module ID=\"1\" LineNr=\"1\" EndLineNr=\"" + (nbFunctions * FUNCTION_LINES + 1) + "\" ColNr=\"1\" EndColNr=\"1\">\n");
+            for(int f = 0; f < nbFunctions; ++f){
+                int ln = f * FUNCTION_LINES + 1;
+                String fn = "func" + f;
+                py.write("def " + fn + "(a, b):\n");
+                py.write("    \"\"\"doc for " + fn + "\"\"\"\n");
+                py.write("    if a < b and True:\n");
+                py.write("        return a = b\n");
+                py.write("    try: x = 1\n");
+                py.write("print(x)\n");
+                int[] ids = new int[14];
+                for(int k = 0; k < ids.length; ++k){
+                    ids[k] = ++nextID;
+                }
+                int fid = ids[0], nm = ids[1], ifid = ids[2], test = ids[3], ret = ids[4], val = ids[5], tr = ids[6];
+                int doc = ids[7], tn = ids[8], call = ids[9], fu = ids[10], nn = ids[11], ar = ids[12], tnn = ids[13];
+                xml.write(" <FunctionDef" + position(fid, ln, ln + 3, 1, 14) + ">\n");
+                xml.write("  <name" + position(nm, ln, ln, 5, 4 + fn.length()) + ">" + fn + "</name>\n");
+                xml.write("  <Expr" + position(doc, ln + 1, ln + 1, 5, 20) + ">\"\"\"doc\"\"\"</Expr>\n");
+                xml.write("  <If" + position(ifid, ln + 2, ln + 3, 5, 22) + ">\n");
+                xml.write("   <test" + position(test, ln + 2, ln + 2, 8, 9) + "><n ID=\"" + tnn + "\">a</n></test>\n");
+                xml.write("   <Return" + position(ret, ln + 3, ln + 3, 9, 20) + ">\n");
+                xml.write("    <value" + position(val, ln + 3, ln + 3, 16, 16) + ">a</value>\n");
+                xml.write("   </Return>\n");
+                xml.write("  </If>\n");
+                xml.write(" </FunctionDef>\n");
+                xml.write(" <Try" + position(tr, ln + 4, ln + 4, 5, 14) + ">\n");
+                xml.write("  <body" + position(tn, ln + 4, ln + 4, 10, 10) + ">x</body>\n");
+                xml.write(" </Try>\n");
+                xml.write(" <Call" + position(call, ln + 5, ln + 5, 1, 8) + "><func" + position(fu, ln + 5, ln + 5, 1, 5) +
+                        "><n ID=\"" + nn + "\">print</n></func><args" + position(ar, ln + 5, ln + 5, 7, 7) + ">x</args></Call>\n");
+                functions.add(new int[]{fid, nm, doc, ifid, test, ret, val, tr, tn, call, fu});
+            }
+            xml.write("</Module>\n");
+        }
+        return functions;
+    }
+
+    private static String position(int id, int lineNr, int endLineNr, int colNr, int endColNr){
+        return " ID=\"" + id + "\" LineNr=\"" + lineNr + "\" EndLineNr=\"" + endLineNr +
+                "\" ColNr=\"" + colNr + "\" EndColNr=\"" + endColNr + "\"";
+    }
+
+    /**
+     * write the matches of a class: each pattern matches a random subset of the nodes of some functions
+     * @return number of matches
+     * @throws IOException
+     */
+    private int writeMatches(File file, Map<String, List<int[]>> sources, String sourceDir) throws IOException {
+        int nbMatches = 0;
+        try(Writer out = open(file)){
+            out.write("<matches>\n");
+            for(int p = 1; p <= nbPatterns; ++p){
+                for(Map.Entry<String, List<int[]>> source : sources.entrySet()){
+                    for(int[] ids : source.getValue()){
+                        if(random.nextDouble() >= matchRate) continue;
+                        out.write(" <match PatternID=\"" + p + "\" FullName=\"" + sourceDir + "/" + source.getKey() + ".py\">\n");
+                        for(int id : sample(ids, 2 + random.nextInt(ids.length - 1))){
+                            out.write("  <node ID=\"" + id + "\"/>\n");
+                        }
+                        out.write(" </match>\n");
+                        ++nbMatches;
+                    }
+                }
+            }
+            out.write("</matches>\n");
+        }
+        return nbMatches;
+    }
+
+    private int[] sample(int[] values, int size){
+        int[] copy = values.clone();
+        for(int i = 0; i < size; ++i){
+            int j = i + random.nextInt(copy.length - i);
+            int value = copy[i];
+            copy[i] = copy[j];
+            copy[j] = value;
+        }
+        return Arrays.copyOf(copy, size);
+    }
+
+    private void writePatterns(File file) throws IOException {
+        try(Writer out = open(file)){
+            out.write("<results>\n");
+            for(int p = 1; p <= nbPatterns; ++p){
+                out.write("<subtree id=\"" + p + "\" support=\"" + (1 + random.nextInt(9)) + "-" + (1 + random.nextInt(9)) + "\"><x/></subtree>\n");
+            }
+            out.write("</results>\n");
+        }
+    }
+
+    private void writeClusters(File file) throws IOException {
+        int[] patternIDs = new int[nbPatterns];
+        for(int p = 0; p < nbPatterns; ++p){
+            patternIDs[p] = p + 1;
+        }
+        try(Writer out = open(file)){
+            out.write("<clusters>\n");
+            for(int c = 0; c < nbClusters; ++c){
+                out.write(" <cluster>\n");
+                for(int patternID : sample(patternIDs, Math.min(clusterSize, nbPatterns))){
+                    out.write("  <pattern ID=\"" + patternID + "\"/>\n");
+                }
+                out.write(" </cluster>\n");
+            }
+            out.write("</clusters>\n");
+        }
+    }
+
+    /**
+     * delete a directory and its content
+     * @param file
+     */
+    public static void delete(File file){
+        File[] children = file.listFiles();
+        if(children != null){
+            for(File child : children){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
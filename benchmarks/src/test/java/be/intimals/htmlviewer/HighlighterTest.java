@@ -0,0 +1,88 @@
+package be.intimals.htmlviewer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static be.intimals.htmlviewer.Variables.keywords;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HighlighterTest {
+
+    private static String render(Highlighter highlighter, String line){
+        StringBuilder sb = new StringBuilder();
+        highlighter.render(line, sb);
+        return sb.toString();
+    }
+
+    @Test
+    void marksVariablesThenKeywords(){
+        String line = "    if a < b and True:";
+        Highlighter highlighter = new Highlighter();
+        highlighter.add(7, 8, Highlighter.VARIABLE, "a");
+        highlighter.addKeywords(line, keywords);
+        assertEquals("    <kc>if</kc> <vc>a</vc> < b <kc>and</kc> True:", render(highlighter, line));
+    }
+
+    @Test
+    void writesTheTextOfASpanInsteadOfItsCharacters(){
+        //a docstring is marked with the text of its node
+        String line = "    \"\"\"doc for func0\"\"\"";
+        Highlighter highlighter = new Highlighter();
+        highlighter.add(4, 20, Highlighter.VARIABLE, "\"\"\"doc\"\"\"");
+        assertEquals("    <vc>\"\"\"doc\"\"\"</vc>\"\"\"", render(highlighter, line));
+    }
+
+    @Test
+    void keepsTheFirstOfOverlappingSpans(){
+        //print(x): the dummy span of the call encloses the name of the function,
+        //the enclosing span is added first and the name is dropped
+        String line = "print(x)";
+        Highlighter highlighter = new Highlighter();
+        highlighter.add(0, 8, Highlighter.DUMMY, "x");
+        highlighter.add(0, 5, Highlighter.VARIABLE, "print");
+        highlighter.addKeywords(line, keywords);
+        assertEquals("<dc>x</dc>", render(highlighter, line));
+    }
+
+    @Test
+    void dropsASpanStartingInsideAPreviousSpan(){
+        String line = "return a = b";
+        Highlighter highlighter = new Highlighter();
+        highlighter.add(0, 8, Highlighter.VARIABLE, null);
+        highlighter.add(7, 12, Highlighter.DUMMY, null);
+        assertEquals("<vc>return a</vc> = b", render(highlighter, line));
+    }
+
+    @Test
+    void dropsSpansOutsideTheLine(){
+        Highlighter highlighter = new Highlighter();
+        highlighter.add(2, 40, Highlighter.VARIABLE, "x");
+        highlighter.add(3, 1, Highlighter.VARIABLE, "y");
+        assertEquals("x = 1", render(highlighter, "x = 1"));
+    }
+
+    @Test
+    void keywordsCoveredByASpanAreNotMarked(){
+        String line = "try: x = 1";
+        Highlighter highlighter = new Highlighter();
+        highlighter.add(0, 4, Highlighter.VARIABLE, null);
+        highlighter.addKeywords(line, keywords);
+        assertEquals("<vc>try:</vc> x <kc>=</kc> 1", render(highlighter, line));
+    }
+
+    @Test
+    void visitsTheSpansWrittenByRender() throws IOException {
+        String line = "print(x)";
+        Highlighter highlighter = new Highlighter();
+        highlighter.add(6, 7, Highlighter.VARIABLE, "x");
+        highlighter.add(0, 8, Highlighter.DUMMY, "call");
+        highlighter.add(0, 5, Highlighter.VARIABLE, null);
+        List<String> spans = new ArrayList<>();
+        highlighter.visit(line, (from, to, kind, text) -> spans.add(from + "," + to + "," + kind + "," + text));
+        assertEquals(List.of("0,8,1,call"), spans);
+    }
+
+}
@@ -0,0 +1,36 @@
+package be.intimals.htmlviewer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntListTest {
+
+    @Test
+    void growsAndKeepsOrder(){
+        IntList list = new IntList(1);
+        for(int i = 0; i < 100; ++i) list.add(i * 3);
+        assertEquals(100, list.size());
+        assertEquals(0, list.get(0));
+        assertEquals(297, list.get(99));
+        int[] values = list.toArray();
+        assertEquals(100, values.length);
+        assertEquals(150, values[50]);
+    }
+
+    @Test
+    void toArrayIsACopy(){
+        IntList list = new IntList();
+        list.add(7);
+        list.toArray()[0] = 8;
+        assertEquals(7, list.get(0));
+    }
+
+    @Test
+    void getBeyondSizeFails(){
+        IntList list = new IntList(16);
+        list.add(1);
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(1));
+    }
+
+}
@@ -0,0 +1,32 @@
+package be.intimals.htmlviewer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchIndexTest {
+
+    @Test
+    void groupsMatchesByPatternInFileOrder(){
+        //pattern ID of each match, -1 for a match without pattern
+        MatchIndex index = MatchIndex.build(new int[]{2, 0, 2, -1, 1, 2}, 3);
+        assertEquals(1, index.countMatches(0));
+        assertEquals(1, index.countMatches(1));
+        assertEquals(3, index.countMatches(2));
+        assertEquals(0, index.countMatches(3));
+        assertEquals(1, index.getMatch(0, 0));
+        assertEquals(4, index.getMatch(1, 0));
+        assertEquals(0, index.getMatch(2, 0));
+        assertEquals(2, index.getMatch(2, 1));
+        assertEquals(5, index.getMatch(2, 2));
+    }
+
+    @Test
+    void unknownPatternsHaveNoMatches(){
+        MatchIndex index = MatchIndex.build(new int[]{1, 1}, 1);
+        assertEquals(0, index.countMatches(-1));
+        assertEquals(0, index.countMatches(2));
+        assertEquals(0, index.countMatches(100));
+    }
+
+}
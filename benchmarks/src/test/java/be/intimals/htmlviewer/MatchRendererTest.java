@@ -0,0 +1,103 @@
+package be.intimals.htmlviewer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * golden output of the markers of a match, the same lines as in the pages of the generated results
+ */
+class MatchRendererTest {
+
+    static final String PYTHON =
+            "def func0(a, b):\n" +
+            "    \"\"\"doc for func0\"\"\"\n" +
+            "    if a < b and True:\n" +
+            "        return a = b\n" +
+            "    try: x = 1\n" +
+            "print(x)\n" +
+            "def func1(a, b):\n";
+
+    static final String XML =
+            "<Module ID=\"1\" LineNr=\"1\" EndLineNr=\"6\" ColNr=\"1\" EndColNr=\"1\">\n" +
+            " <FunctionDef ID=\"2\" LineNr=\"1\" EndLineNr=\"4\" ColNr=\"1\" EndColNr=\"14\">\n" +
+            "  <name ID=\"3\" LineNr=\"1\" EndLineNr=\"1\" ColNr=\"5\" EndColNr=\"9\">func0</name>\n" +
+            "  <Expr ID=\"9\" LineNr=\"2\" EndLineNr=\"2\" ColNr=\"5\" EndColNr=\"20\">\"\"\"doc\"\"\"</Expr>\n" +
+            "  <If ID=\"4\" LineNr=\"3\" EndLineNr=\"4\" ColNr=\"5\" EndColNr=\"22\">\n" +
+            "   <test ID=\"5\" LineNr=\"3\" EndLineNr=\"3\" ColNr=\"8\" EndColNr=\"9\"><n ID=\"15\">a</n></test>\n" +
+            "   <Return ID=\"6\" LineNr=\"4\" EndLineNr=\"4\" ColNr=\"9\" EndColNr=\"20\">\n" +
+            "    <value ID=\"7\" LineNr=\"4\" EndLineNr=\"4\" ColNr=\"16\" EndColNr=\"16\">a</value>\n" +
+            "   </Return>\n" +
+            "  </If>\n" +
+            " </FunctionDef>\n" +
+            " <Try ID=\"8\" LineNr=\"5\" EndLineNr=\"5\" ColNr=\"5\" EndColNr=\"14\">\n" +
+            "  <body ID=\"10\" LineNr=\"5\" EndLineNr=\"5\" ColNr=\"10\" EndColNr=\"10\">x</body>\n" +
+            " </Try>\n" +
+            " <Call ID=\"11\" LineNr=\"6\" EndLineNr=\"6\" ColNr=\"1\" EndColNr=\"8\"><func ID=\"12\" LineNr=\"6\" EndLineNr=\"6\" ColNr=\"1\" EndColNr=\"5\"><n ID=\"13\">print</n></func><args ID=\"14\" LineNr=\"6\" EndLineNr=\"6\" ColNr=\"7\" EndColNr=\"7\">x</args></Call>\n" +
+            "</Module>\n";
+
+    //the call of line 6 misses its argument, it is a dummy node enclosing the name of the function
+    static final int[] MATCH = {2, 3, 9, 4, 5, 6, 7, 8, 10, 11, 12};
+
+    static final String MARKED_LINES =
+            "<pre><mark>1 <kc>def</kc> <vc>func0</vc>(a, b):</mark></pre>" +
+            "<pre><mark>2     <vc>\"\"\"doc\"\"\"</vc>\"\"\"</mark></pre>" +
+            "<pre><mark>3     <kc>if</kc> <vc>a</vc>< b <kc>and</kc> True:</mark></pre>" +
+            "<pre><mark>4         <kc>return</kc> <vc>a</vc> <kc>=</kc> b</mark></pre>" +
+            "<pre><mark>5 <kc>    try: x <kc>=</kc> 1</kc></mark></pre>" +
+            "<pre><mark>6 <dc>x</dc></mark></pre>";
+
+    @TempDir
+    static Path dir;
+
+    static SourceFile sourceFile;
+
+    @BeforeAll
+    static void writeSources() throws IOException {
+        Path py = Files.write(dir.resolve("f0.py"), PYTHON.getBytes(StandardCharsets.UTF_8));
+        Path xml = Files.write(dir.resolve("f0.xml"), XML.getBytes(StandardCharsets.UTF_8));
+        sourceFile = new SourceFile(Utils.readPyFile(py.toString()), SourceIndex.build(Utils.readXML(xml.toString())));
+    }
+
+    @Test
+    void marksTheLinesOfAMatch() throws IOException {
+        StringBuilder out = new StringBuilder();
+        new MatchRenderer(sourceFile, MATCH).addMarkers(out);
+        assertEquals(MARKED_LINES + "<pre>7 def func1(a, b):</pre>\n", out.toString());
+    }
+
+    @Test
+    void replacesTheLinesOutsideTheContextByAGap() throws IOException {
+        StringBuilder out = new StringBuilder();
+        new MatchRenderer(sourceFile, MATCH).addMarkers(out, 0);
+        assertEquals(MARKED_LINES + "<pre class=\"gap\">... 1 line ...</pre>\n", out.toString());
+    }
+
+    @Test
+    void ignoresTheOrderAndDuplicatesOfTheNodeIDs() throws IOException {
+        StringBuilder out = new StringBuilder();
+        new MatchRenderer(sourceFile, new int[]{12, 11, 10, 8, 7, 6, 5, 4, 9, 3, 2, 12, 3}).addMarkers(out);
+        assertEquals(MARKED_LINES + "<pre>7 def func1(a, b):</pre>\n", out.toString());
+    }
+
+    @Test
+    void writesTheMarksAsJson() throws IOException {
+        StringWriter out = new StringWriter();
+        new MatchRenderer(sourceFile, MATCH).writeMarks(out);
+        assertEquals("[[1,2,[[0,3,2,null],[4,9,0,\"func0\"]]]," +
+                "[2,2,[[4,20,0,\"\\\"\\\"\\\"doc\\\"\\\"\\\"\"]]]," +
+                "[3,2,[[4,6,2,null],[7,9,0,\"a\"],[13,16,2,null]]]," +
+                "[4,2,[[8,14,2,null],[15,16,0,\"a\"],[17,18,2,null]]]," +
+                "[5,1,[[11,12,2,null]]]," +
+                "[6,2,[[0,8,1,\"x\"]]]]", out.toString());
+    }
+
+}
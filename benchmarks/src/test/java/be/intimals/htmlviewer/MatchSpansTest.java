@@ -0,0 +1,72 @@
+package be.intimals.htmlviewer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchSpansTest {
+
+    @Test
+    void sortsByLineThenColumnLongestFirst(){
+        MatchSpans spans = new MatchSpans();
+        spans.add(6, 0, 5, MatchSpans.VARIABLE, "print");
+        spans.addLine(5, MatchSpans.LINE_KEYWORDS);
+        spans.add(6, 6, 7, MatchSpans.VARIABLE, "x");
+        spans.add(6, 0, 8, MatchSpans.DUMMY, "x");
+        spans.add(1, 4, 9, MatchSpans.VARIABLE, "func0");
+        spans.seal();
+        assertEquals(5, spans.size());
+        assertEquals(1, spans.getLine(0));
+        assertEquals(MatchSpans.LINE_KEYWORDS, spans.getKind(1));
+        assertNull(spans.getText(1));
+        //the enclosing dummy span comes before the name it encloses
+        assertEquals(MatchSpans.DUMMY, spans.getKind(2));
+        assertEquals(8, spans.getEndCol(2));
+        assertEquals("print", spans.getText(3));
+        assertEquals(6, spans.getStartCol(4));
+    }
+
+    @Test
+    void removesDuplicatedSpans(){
+        MatchSpans spans = new MatchSpans();
+        for(int i = 0; i < 3; ++i){
+            spans.add(2, 4, 7, MatchSpans.VARIABLE, "abc");
+            spans.addLine(3, MatchSpans.LINE_COMMENT);
+        }
+        spans.add(2, 4, 7, MatchSpans.VARIABLE, "abd");
+        spans.seal();
+        assertEquals(3, spans.size());
+        assertEquals("abc", spans.getText(0));
+        assertEquals("abd", spans.getText(1));
+        assertEquals(MatchSpans.LINE_COMMENT, spans.getKind(2));
+    }
+
+    @Test
+    void sortsManySpansLikeASortedCopy(){
+        //more spans than the insertion sort threshold, in reverse order
+        MatchSpans spans = new MatchSpans();
+        for(int i = 99; i >= 0; --i) spans.add(i / 10 + 1, i % 10, i % 10 + 1, MatchSpans.VARIABLE, "v" + i);
+        spans.seal();
+        assertEquals(100, spans.size());
+        for(int i = 0; i < 100; ++i){
+            assertEquals(i / 10 + 1, spans.getLine(i));
+            assertEquals(i % 10, spans.getStartCol(i));
+            assertEquals("v" + i, spans.getText(i));
+        }
+    }
+
+    @Test
+    void findsTheFirstSpanOfALine(){
+        MatchSpans spans = new MatchSpans();
+        spans.add(2, 0, 1, MatchSpans.VARIABLE, "a");
+        spans.add(2, 2, 3, MatchSpans.VARIABLE, "b");
+        spans.add(5, 0, 1, MatchSpans.VARIABLE, "c");
+        spans.seal();
+        assertEquals(0, spans.firstSpan(1));
+        assertEquals(0, spans.firstSpan(2));
+        assertEquals(2, spans.firstSpan(3));
+        assertEquals(2, spans.firstSpan(5));
+        assertEquals(3, spans.firstSpan(6));
+    }
+
+}
@@ -0,0 +1,97 @@
+package be.intimals.htmlviewer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * round trip of PackWriter and PackReader, and the bytes of the pack format
+ */
+class PackFileTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] bytes(String text){return text.getBytes(StandardCharsets.UTF_8);}
+
+    @Test
+    void readsBackStoredAndDeflatedPages() throws IOException {
+        File file = dir.resolve("html.pack").toFile();
+        byte[] repeated = bytes(new String(new char[2000]).replace('\0', 'a'));
+        byte[] random = new byte[3000];
+        new Random(1).nextBytes(random);
+        try (PackWriter pack = new PackWriter(file, true)){
+            pack.add("repeated.html", repeated, repeated.length);
+            pack.add("random.html", random, random.length);
+            //only the first bytes of the buffer are the page
+            pack.add("short.html", bytes("page and more"), 4);
+            assertTrue(pack.contains("short.html"));
+            assertEquals(3, pack.size());
+        }
+        try (PackReader reader = new PackReader(file)){
+            assertEquals(3, reader.size());
+            assertArrayEquals(repeated, reader.read("repeated.html"));
+            assertArrayEquals(random, reader.read("random.html"));
+            assertArrayEquals(bytes("page"), reader.read("short.html"));
+            assertNull(reader.read("missing.html"));
+        }
+        //the repeated page is deflated
+        assertTrue(file.length() < repeated.length + random.length);
+    }
+
+    @Test
+    void thePageAddedLastWins() throws IOException {
+        File file = dir.resolve("html.pack").toFile();
+        try (PackWriter pack = new PackWriter(file, false)){
+            pack.add("a.html", bytes("first"), 5);
+            pack.add("a.html", bytes("second"), 6);
+        }
+        try (PackReader reader = new PackReader(file)){
+            assertArrayEquals(bytes("second"), reader.read("a.html"));
+        }
+    }
+
+    @Test
+    void writesTheVersion1Layout() throws IOException {
+        File file = dir.resolve("html.pack").toFile();
+        try (PackWriter pack = new PackWriter(file, false)){
+            pack.add("a.html", bytes("hi"), 2);
+        }
+        String expected =
+                "4652504b" + "00000001" +                   //magic "FRPK", version
+                "6869" +                                    //page data at offset 8
+                "00000001" +                                //index at offset 10: number of pages
+                "00000006" + "612e68746d6c" +               //name "a.html"
+                "0000000000000008" + "00000002" + "00000002" + "00" +  //offset, stored length, length, stored
+                "000000000000000a" + "4652504b";            //trailer: offset of the index, magic
+        assertEquals(expected, hex(Files.readAllBytes(file.toPath())));
+    }
+
+    @Test
+    void rejectsAnIncompletePack() throws IOException {
+        File file = dir.resolve("html.pack").toFile();
+        try (PackWriter pack = new PackWriter(file, false)){
+            pack.add("a.html", bytes("hello"), 5);
+        }
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")){
+            truncated.setLength(truncated.length() - 4);
+        }
+        assertThrows(IOException.class, () -> new PackReader(file).close());
+    }
+
+    static String hex(byte[] bytes){
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+}
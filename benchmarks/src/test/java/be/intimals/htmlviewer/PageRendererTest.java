@@ -0,0 +1,89 @@
+package be.intimals.htmlviewer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static be.intimals.htmlviewer.Variables.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * pagination of the lists of patterns and clusters
+ */
+class PageRendererTest {
+
+    //one class, 5 patterns and 3 clusters
+    private static ResultModel model(){
+        MatchSet matchSet = new MatchSet("_", "s", new int[0], new int[0], new String[0], new int[]{0}, new int[0]);
+        return new ResultModel(false, 5, new int[]{0, 1, 1, 1, 1, 1}, new int[6],
+                Collections.singletonList(matchSet), Arrays.asList(new int[]{1}, new int[]{2, 3}, new int[]{4, 5}));
+    }
+
+    private static PageRenderer renderer(int pageSize){
+        return new PageRenderer(model(), "res", null, null, pageSize, -1);
+    }
+
+    private static String body(String page){
+        assertTrue(page.startsWith(HTMLHEADER));
+        assertTrue(page.endsWith(HTMLCLOSE));
+        return page.substring(HTMLHEADER.length(), page.length() - HTMLCLOSE.length());
+    }
+
+    @Test
+    void namesThePagesOfAList(){
+        assertEquals("patterns.html", PageRenderer.pageName("patterns.html", 1));
+        assertEquals("patterns_p2.html", PageRenderer.pageName("patterns.html", 2));
+        assertEquals("cluster_3_patterns_p10.html", PageRenderer.pageName(PageRenderer.clusterPageName(3), 10));
+    }
+
+    @Test
+    void countsThePagesOfAList(){
+        PageRenderer renderer = renderer(2);
+        assertEquals(1, renderer.countPages(0));
+        assertEquals(1, renderer.countPages(2));
+        assertEquals(2, renderer.countPages(3));
+        assertEquals(3, renderer.countPatternsPages());
+        assertEquals(2, renderer.countClustersPages());
+        assertEquals(1, renderer.countClusterPages(2));
+        //no limit
+        assertEquals(1, renderer(0).countPages(100000));
+    }
+
+    @Test
+    void writesAMiddlePageWithPreviousAndNextLinks() throws IOException {
+        StringWriter out = new StringWriter();
+        renderer(2).writePatternsPage(2, out);
+        assertEquals("<p> Patterns: res</p>\n" +
+                "<ul class=\"navbar-nav\">\n" +
+                "<li class=\"nav-item\"><a class=\"nav-link\" href=\"pattern_3_matches__.html\" target=\"center\" id=\"act\">pattern 3</a></li>\n" +
+                "<li class=\"nav-item\"><a class=\"nav-link\" href=\"pattern_4_matches__.html\" target=\"center\">pattern 4</a></li>\n" +
+                "</ul>\n" +
+                "<p class=\"pager\"><a href=\"patterns.html\">&lt; previous</a> page 2 / 3 <a href=\"patterns_p3.html\">next &gt;</a></p>\n",
+                body(out.toString()));
+    }
+
+    @Test
+    void writesTheLastPageWithItsRemainingItems() throws IOException {
+        StringWriter out = new StringWriter();
+        renderer(2).writePatternsPage(3, out);
+        assertEquals("<p> Patterns: res</p>\n" +
+                "<ul class=\"navbar-nav\">\n" +
+                "<li class=\"nav-item\"><a class=\"nav-link\" href=\"pattern_5_matches__.html\" target=\"center\" id=\"act\">pattern 5</a></li>\n" +
+                "</ul>\n" +
+                "<p class=\"pager\"><a href=\"patterns_p2.html\">&lt; previous</a> page 3 / 3 </p>\n",
+                body(out.toString()));
+    }
+
+    @Test
+    void writesASinglePageWithoutPager() throws IOException {
+        StringWriter out = new StringWriter();
+        renderer(0).writePatternsPage(1, out);
+        String body = body(out.toString());
+        assertFalse(body.contains("pager"));
+        assertEquals(5, body.split("<li ", -1).length - 1);
+    }
+
+}
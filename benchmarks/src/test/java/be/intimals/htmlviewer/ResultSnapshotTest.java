@@ -0,0 +1,98 @@
+package be.intimals.htmlviewer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * round trip of a result model through a snapshot, and the bytes of the snapshot format
+ */
+class ResultSnapshotTest {
+
+    private static final long FINGERPRINT = 0x0102030405060708L;
+
+    @TempDir
+    Path dir;
+
+    //one class, pattern 1 with two matches in f.py
+    static ResultModel smallModel(){
+        MatchSet matchSet = new MatchSet("_", "s", new int[]{1, 1}, new int[]{0, 0}, new String[]{"f.py"},
+                new int[]{0, 1, 3}, new int[]{5, 6, 7});
+        return new ResultModel(false, 1, new int[]{0, 2}, new int[]{0, 0},
+                Collections.singletonList(matchSet), Collections.singletonList(new int[]{1}));
+    }
+
+    @Test
+    void readsBackTheModel() throws IOException {
+        MatchSet old = new MatchSet("old", "src/pos", new int[]{2, 1, 2}, new int[]{0, 1, 1}, new String[]{"a.py", "b.py"},
+                new int[]{0, 2, 3, 5}, new int[]{4, 9, 3, 1, 8});
+        MatchSet neu = new MatchSet("new", "src/nag", new int[0], new int[0], new String[0], new int[]{0}, new int[0]);
+        ResultModel model = new ResultModel(true, 2, new int[]{0, 1, 2}, new int[]{0, 0, 0},
+                Arrays.asList(old, neu), Arrays.asList(new int[]{1, 2}, new int[]{2}));
+        File file = dir.resolve("run.snapshot").toFile();
+        ResultSnapshot.write(model, file, FINGERPRINT);
+        ResultModel read = ResultSnapshot.read(file, FINGERPRINT);
+        assertNotNull(read);
+        assertTrue(read.isTwoClass());
+        assertEquals(2, read.getNbPatterns());
+        assertEquals(2, read.getOldSupport(2));
+        assertEquals(2, read.getMatchSets().size());
+        MatchSet set = read.getMatchSet("old");
+        assertEquals("src/pos", set.getSourceDir());
+        assertEquals(2, set.countMatches(2));
+        assertEquals(2, set.getMatch(2, 1));
+        assertEquals("b.py", set.getFullName(2));
+        assertArrayEquals(new int[]{1, 8}, set.getNodeIDs(2));
+        assertEquals(0, read.getMatchSet("new").size());
+        assertArrayEquals(new int[]{1, 2}, read.getClusters().get(0));
+        assertArrayEquals(new int[]{2}, read.getClusters().get(1));
+    }
+
+    @Test
+    void ignoresASnapshotOfOtherInputFiles() throws IOException {
+        File file = dir.resolve("run.snapshot").toFile();
+        ResultSnapshot.write(smallModel(), file, FINGERPRINT);
+        assertNull(ResultSnapshot.read(file, FINGERPRINT + 1));
+    }
+
+    @Test
+    void ignoresATruncatedSnapshot() throws IOException {
+        File file = dir.resolve("run.snapshot").toFile();
+        ResultSnapshot.write(smallModel(), file, FINGERPRINT);
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")){
+            truncated.setLength(truncated.length() - 6);
+        }
+        assertNull(ResultSnapshot.read(file, FINGERPRINT));
+        assertNull(ResultSnapshot.read(dir.resolve("missing.snapshot").toFile(), FINGERPRINT));
+    }
+
+    @Test
+    void writesTheVersion1Layout() throws IOException {
+        File file = dir.resolve("run.snapshot").toFile();
+        ResultSnapshot.write(smallModel(), file, FINGERPRINT);
+        String expected =
+                "46525356" + "00000001" + "0102030405060708" +  //magic "FRSV", version, fingerprint
+                "00" + "00000001" +                             //one class, number of patterns
+                "00000002" + "00000000" + "00000002" +          //old supports
+                "00000002" + "00000000" + "00000000" +          //new supports
+                "00000001" +                                    //number of match sets
+                "00000001" + "5f" + "00000001" + "73" +         //label "_", source directory "s"
+                "00000002" + "00000001" + "00000001" +          //pattern IDs
+                "00000002" + "00000000" + "00000000" +          //file index
+                "00000001" + "00000004" + "662e7079" +          //file names: "f.py"
+                "00000003" + "00000000" + "00000001" + "00000003" +  //node start
+                "00000003" + "00000005" + "00000006" + "00000007" +  //node IDs
+                "00000001" + "00000001" + "00000001";           //clusters
+        assertEquals(expected, PackFileTest.hex(Files.readAllBytes(file.toPath())));
+    }
+
+}
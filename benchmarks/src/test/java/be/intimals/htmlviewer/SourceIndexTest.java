@@ -0,0 +1,135 @@
+package be.intimals.htmlviewer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * index of the nodes of a source XML file, built from the XML file and mapped back from its span file
+ */
+class SourceIndexTest {
+
+    private static final long STAMP = 42L;
+
+    @TempDir
+    static Path dir;
+
+    static SourceIndex built;
+
+    @BeforeAll
+    static void buildIndex() throws IOException {
+        Path xml = Files.write(dir.resolve("f0.xml"), MatchRendererTest.XML.getBytes(StandardCharsets.UTF_8));
+        built = SourceIndex.build(Utils.readXML(xml.toString()));
+    }
+
+    private static void assertSameNodes(SourceIndex expected, SourceIndex actual){
+        for(int id = 0; id < 20; ++id){
+            assertEquals(expected.contains(id), actual.contains(id), "node " + id);
+            if(!expected.contains(id)) continue;
+            assertEquals(expected.hasPosition(id), actual.hasPosition(id));
+            assertEquals(expected.isLeaf(id), actual.isLeaf(id));
+            assertEquals(expected.getLineNr(id), actual.getLineNr(id));
+            assertEquals(expected.getEndLineNr(id), actual.getEndLineNr(id));
+            assertEquals(expected.getColNr(id), actual.getColNr(id));
+            assertEquals(expected.getEndColNr(id), actual.getEndColNr(id));
+            assertEquals(expected.getNodeName(id), actual.getNodeName(id));
+            assertEquals(expected.getText(id), actual.getText(id));
+            assertEquals(expected.getDummyVariable(id), actual.getDummyVariable(id));
+            assertEquals(expected.countChildren(id), actual.countChildren(id));
+            for(int k = 0; k < expected.countChildren(id); ++k){
+                assertEquals(expected.getChild(id, k), actual.getChild(id, k));
+            }
+        }
+    }
+
+    @Test
+    void indexesTheNodes(){
+        assertTrue(built.contains(11));
+        assertFalse(built.contains(16));
+        assertEquals("Call", built.getNodeName(11));
+        assertEquals(6, built.getLineNr(11));
+        assertEquals(8, built.getEndColNr(11));
+        assertFalse(built.isLeaf(11));
+        assertEquals(2, built.countChildren(11));
+        assertEquals(12, built.getChild(11, 0));
+        assertEquals(14, built.getChild(11, 1));
+        assertTrue(built.isLeaf(3));
+        assertEquals("func0", built.getText(3));
+        assertEquals("", built.getDummyVariable(3));
+        //a node without position, e.g. a name inside a test
+        assertTrue(built.contains(15));
+        assertFalse(built.hasPosition(15));
+    }
+
+    @Test
+    void mapsBackASpanFile() throws IOException {
+        File file = dir.resolve("f0.spans").toFile();
+        built.write(file, STAMP);
+        SourceIndex mapped = SourceIndex.map(file, STAMP);
+        assertNotNull(mapped);
+        assertSameNodes(built, mapped);
+        //no temporary file is left
+        try (java.util.stream.Stream<Path> files = Files.list(dir)){
+            assertEquals(0, files.filter(p -> p.toString().endsWith(".tmp")).count());
+        }
+    }
+
+    @Test
+    void ignoresAStaleOrTruncatedSpanFile() throws IOException {
+        File file = dir.resolve("stale.spans").toFile();
+        built.write(file, STAMP);
+        assertNull(SourceIndex.map(file, STAMP + 1));
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")){
+            truncated.setLength(truncated.length() - 1);
+        }
+        assertNull(SourceIndex.map(file, STAMP));
+        assertNull(SourceIndex.map(dir.resolve("missing.spans").toFile(), STAMP));
+    }
+
+    @Test
+    void writesTheVersion1Layout() throws IOException {
+        File file = dir.resolve("layout.spans").toFile();
+        built.write(file, STAMP);
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        //header: magic "FRSP", version, stamp of the XML file, then the sizes of the tables
+        assertEquals(0x46525350, in.getInt());
+        assertEquals(1, in.getInt());
+        assertEquals(STAMP, in.getLong());
+        int capacity = in.getInt();
+        int nbChildIDs = in.getInt();
+        int nbStringStarts = in.getInt();
+        int poolSize = in.getInt();
+        assertEquals(64, capacity);
+        //children of Module 3, FunctionDef 3, If 2, test 1, Return 1, Try 1, Call 2, func 1
+        assertEquals(14, nbChildIDs);
+        assertEquals(32 + 4 * (capacity * 9 + nbChildIDs + nbStringStarts) + poolSize, in.capacity());
+        //record of node 11, the call of line 6: flags, line, end line, column, end column,
+        //first child, number of children, name, text
+        in.position(32 + 4 * 9 * 11);
+        int[] record = new int[9];
+        for(int i = 0; i < 9; ++i) record[i] = in.getInt();
+        assertArrayEquals(new int[]{3, 6, 6, 1, 8}, java.util.Arrays.copyOf(record, 5));
+        assertEquals(2, record[6]);
+        //the strings are stored once in a pool of UTF-8 bytes, the first one is ""
+        in.position(32 + 4 * (capacity * 9 + nbChildIDs));
+        assertEquals(0, in.getInt());
+        assertEquals(0, in.getInt());
+        byte[] pool = new byte[poolSize];
+        in.position(in.capacity() - poolSize);
+        in.get(pool);
+        String strings = new String(pool, StandardCharsets.UTF_8);
+        assertEquals(1, strings.split("Call", -1).length - 1);
+        assertTrue(strings.contains("func0"));
+    }
+
+}
@@ -19,28 +19,40 @@ public class Main {
         File inputSource = null;
         File inputResult;
         File outputHtmlDir;
-        if (args.length != 2) {
+        ViewerOptions options = null;
+        try {
+            options = ViewerOptions.parse(args);
+        }catch (IllegalArgumentException e){
+            System.out.println(e.getMessage());
+        }
+        if (options == null || options.getArguments().size() != 2) {
             System.out.println("Usage:");
-            System.out.println("java -jar pyConverter.jar SOURCE_DIR RESULT_DIR");
+            System.out.println("java -jar pyConverter.jar [OPTIONS] SOURCE_DIR RESULT_DIR");
             System.out.println("SOURCE_DIR is a directory containing source files");
             System.out.println("RESULT_DIR is a directory containing results");
+            ViewerOptions.printUsage();
             System.exit(-1);
         } else
             //input source files
-            inputSource = new File(args[0]);
+            inputSource = new File(options.getArguments().get(0));
             //input results files
-            inputResult = new File(args[1]);
+            inputResult = new File(options.getArguments().get(1));
+            if (options.isServe()) {
+                // render pages on demand, nothing is written to the html dir
+                new ViewerServer(inputSource, inputResult, options).view();
+                return;
+            }
             //output html dir
-            outputHtmlDir = new File(args[1]+"/html");
+            outputHtmlDir = new File(options.getArguments().get(1)+"/html");
             //create html dir if it doesn't exists
             if (!outputHtmlDir.exists()) {
                 outputHtmlDir.mkdir();
-            } else {
+            } else if (!options.isIncremental()) {
                 //delete all existing files
                 deleteFiles(outputHtmlDir);
             }
             // create and view results in browser
-            HTMLViewer htmlViewer = new HTMLViewer(inputSource, inputResult, outputHtmlDir);
+            HTMLViewer htmlViewer = new HTMLViewer(inputSource, inputResult, outputHtmlDir, options);
             htmlViewer.view();
     }
 
@@ -0,0 +1,405 @@
+package be.intimals.htmlviewer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static be.intimals.htmlviewer.Utils.*;
+
+/**
+ * render the data set of the single page viewer
+ *
+ * instead of one html file per list and per match, the results are written as a few data files
+ * read by the script of one page, which renders the lists and the source code in the browser:
+ * - data_index.js: title, supports of the patterns and clusters
+ * - data_pattern_P_L.js: matches of pattern P in class L with the marked lines of each match
+ * - data_source_L_I.js: lines of source file I of class L, shared by all its matches
+ * Each data file is a script calling viewer.load(name, value), so that the page also works
+ * when it is opened from the file system, where browsers block reading JSON files.
+ */
+public class DataRenderer {
+
+    public static final String INDEX_FILE = "data_index.js";
+    public static final String APP_FILE = "viewer_app.js";
+
+    private ResultModel model;
+    //name of the result directory
+    private String title;
+    //parsed source files shared by all matches, keyed by Python file name
+    private LruCache<String, SourceFile> sourceCache;
+    //span files of the source XML files, null to parse the XML files
+    private SpanCache spanCache;
+    //maximum number of entries of a list page, 0 for no limit
+    private int pageSize;
+    //number of lines shown around the matched lines of a match, -1 for the whole file
+    private int context;
+
+    public DataRenderer(ResultModel model, String title, LruCache<String, SourceFile> sourceCache, SpanCache spanCache,
+                        int pageSize, int context){
+        this.model = model;
+        this.title = title;
+        this.sourceCache = sourceCache;
+        this.spanCache = spanCache;
+        this.pageSize = pageSize;
+        this.context = context;
+    }
+
+    /**
+     * return name of the data file of the matches of a pattern
+     * @param patternID
+     * @param label : class label of the matches, "_", "old" or "new"
+     * @return
+     */
+    public static String patternFileName(int patternID, String label){
+        return "data_pattern_" + patternID + "_" + label + ".js";
+    }
+
+    /**
+     * return name of the data file of a source file
+     * @param label : class label of the matches, "_", "old" or "new"
+     * @param fileIndex : index of the source file in the match set
+     * @return
+     */
+    public static String sourceFileName(String label, int fileIndex){
+        return "data_source_" + label + "_" + fileIndex + ".js";
+    }
+
+    /**
+     * write a string as a JSON string, null as null
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void writeString(Writer out, String value) throws IOException {
+        if(value == null){
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for(int i = 0; i < value.length(); ++i){
+            char c = value.charAt(i);
+            switch (c){
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    //control characters and line separators are not allowed in JavaScript strings
+                    if(c < ' ' || c == '\u2028' || c == '\u2029'){
+                        out.write(String.format("\\u%04x", (int) c));
+                    }else{
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    private static void writeInts(Writer out, int[] values) throws IOException {
+        out.write('[');
+        for(int i = 0; i < values.length; ++i){
+            if(i > 0) out.write(',');
+            out.write(String.valueOf(values[i]));
+        }
+        out.write(']');
+    }
+
+    private static void startData(Writer out, String fileName) throws IOException {
+        out.write("viewer.load(");
+        //the data name is the file name without "data_" and ".js"
+        writeString(out, fileName.substring(5, fileName.length() - 3));
+        out.write(", ");
+    }
+
+    private static void closeData(Writer out) throws IOException {
+        out.write(");\n");
+    }
+
+    /**
+     * write data_index.js: title, classes, page size, context, supports of the patterns and clusters
+     * @param out
+     * @throws IOException
+     */
+    public void writeIndex(Writer out) throws IOException {
+        startData(out, INDEX_FILE);
+        out.write("{\"title\":");
+        writeString(out, title);
+        out.write(",\"twoClass\":" + model.isTwoClass());
+        out.write(",\"pageSize\":" + pageSize);
+        out.write(",\"context\":" + context);
+        out.write(",\"nbPatterns\":" + model.getNbPatterns());
+        out.write(",\"oldSupports\":");
+        writeInts(out, model.getOldSupports());
+        out.write(",\"newSupports\":");
+        writeInts(out, model.getNewSupports());
+        out.write(",\"clusters\":[");
+        for(int i = 0; i < model.getClusters().size(); ++i){
+            if(i > 0) out.write(',');
+            writeInts(out, model.getClusters().get(i));
+        }
+        out.write("]}");
+        closeData(out);
+    }
+
+    /**
+     * write the data file of the matches of a pattern: for each match its file name,
+     * the index of its source file and its marked lines
+     * @param patternID
+     * @param matchSet : matches of one class grouped by pattern ID
+     * @param out
+     * @throws IOException
+     */
+    public void writePattern(int patternID, MatchSet matchSet, Writer out) throws IOException {
+        startData(out, patternFileName(patternID, matchSet.getLabel()));
+        out.write('[');
+        for(int k = 0; k < matchSet.countMatches(patternID); ++k){
+            int match = matchSet.getMatch(patternID, k);
+            String pyFileName = matchSet.getSourceDir()+"/"+getFileName(matchSet.getFullName(match));
+            String xmlFile = PageRenderer.xmlFileName(pyFileName);
+            SourceFile sourceFile = sourceCache.get(pyFileName, fileName -> SourceFile.read(fileName, xmlFile, spanCache));
+            if(k > 0) out.write(",\n");
+            out.write("{\"name\":");
+            writeString(out, getLastName(matchSet.getFullName(match)));
+            out.write(",\"source\":" + matchSet.getFileIndex()[match]);
+            out.write(",\"marks\":");
+            new MatchRenderer(sourceFile, matchSet.getNodeIDs(match)).writeMarks(out);
+            out.write('}');
+        }
+        out.write(']');
+        closeData(out);
+    }
+
+    /**
+     * write the data file of a source file: its name, its file URI if matches show a part of it, and its lines
+     * @param matchSet : matches of one class grouped by pattern ID
+     * @param fileIndex : index of the source file in the match set
+     * @param out
+     * @throws IOException
+     */
+    public void writeSource(MatchSet matchSet, int fileIndex, Writer out) throws IOException {
+        String pyFileName = matchSet.getSourceDir()+"/"+getFileName(matchSet.getFileNames()[fileIndex]);
+        SourceText lines = readPyFile(pyFileName);
+        startData(out, sourceFileName(matchSet.getLabel(), fileIndex));
+        out.write("{\"name\":");
+        writeString(out, pyFileName);
+        if(context >= 0){
+            out.write(",\"uri\":");
+            writeString(out, PageRenderer.fileURI(pyFileName));
+        }
+        out.write(",\"lines\":[");
+        for(int i = 0; i < lines.size(); ++i){
+            if(i > 0) out.write(",\n");
+            writeString(out, lines.get(i));
+        }
+        out.write("]}");
+        closeData(out);
+    }
+
+    /**
+     * return the page and the script of the single page viewer
+     * @param title : title of the page
+     * @return map from file name to content
+     */
+    public static Map<String, String> coreFiles(String title){
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("_index.html", "<!DOCTYPE html>\n" +
+                "<html>\n" +
+                "   <head>\n" +
+                "      <meta charset=\"utf-8\">\n" +
+                "      <title>" + title + "</title>\n" +
+                "      <link rel=\"stylesheet\" href=\"viewer.css\">\n" +
+                "      <script src=\"" + APP_FILE + "\"></script>\n" +
+                "      <script src=\"" + INDEX_FILE + "\"></script>\n" +
+                "   </head>\n" +
+                "   <body class=\"single-page\">\n" +
+                "      <div id=\"cluster\" class=\"column\"></div>\n" +
+                "      <div id=\"left\" class=\"column\"></div>\n" +
+                "      <div id=\"center\" class=\"column\"></div>\n" +
+                "      <div id=\"right\" class=\"column\"></div>\n" +
+                "   </body>\n" +
+                "</html>\n");
+        files.put("viewer.css", Variables.CSS_CONTENT);
+        files.put(APP_FILE, APP_SCRIPT);
+        return files;
+    }
+
+    // script of the single page viewer: same lists and source view as the html pages
+    private static final String APP_SCRIPT =
+            "var viewer = (function () {\n" +
+            "    var data = {};\n" +
+            "    var waiting = {};\n" +
+            "    var index = null;\n" +
+            "    var TAGS = ['vc', 'dc', 'kc'];\n" +
+            "\n" +
+            "    // called by the data files\n" +
+            "    function load(name, value) {\n" +
+            "        data[name] = value;\n" +
+            "        var callbacks = waiting[name] || [];\n" +
+            "        delete waiting[name];\n" +
+            "        callbacks.forEach(function (callback) { callback(value); });\n" +
+            "    }\n" +
+            "\n" +
+            "    // load data_<name>.js once, its value is null if the file is missing\n" +
+            "    function require(name, callback) {\n" +
+            "        if (name in data) { callback(data[name]); return; }\n" +
+            "        if (waiting[name]) { waiting[name].push(callback); return; }\n" +
+            "        waiting[name] = [callback];\n" +
+            "        var script = document.createElement('script');\n" +
+            "        script.src = 'data_' + name + '.js';\n" +
+            "        script.onerror = function () { load(name, null); };\n" +
+            "        document.head.appendChild(script);\n" +
+            "    }\n" +
+            "\n" +
+            "    function link(item, text, active) {\n" +
+            "        return '<a class=\"nav-link\" href=\"#\" data-item=\"' + item + '\"' + (active ? ' id=\"act\"' : '') + '>' + text + '</a>';\n" +
+            "    }\n" +
+            "\n" +
+            "    function pagerLink(page, text) {\n" +
+            "        return '<a href=\"#\" data-page=\"' + page + '\">' + text + '</a>';\n" +
+            "    }\n" +
+            "\n" +
+            "    // show a page of a list of links in a column, actions[i] is called when link data-item=i is clicked\n" +
+            "    function showList(column, caption, items, actions, page) {\n" +
+            "        page = page || 1;\n" +
+            "        var size = index.pageSize > 0 ? index.pageSize : Math.max(items.length, 1);\n" +
+            "        var nbPages = Math.max(1, Math.ceil(items.length / size));\n" +
+            "        var element = document.getElementById(column);\n" +
+            "        var html = '<p>' + caption + '</p>\\n<ul class=\"navbar-nav\">\\n' +\n" +
+            "            items.slice((page - 1) * size, page * size).map(function (item) { return '<li class=\"nav-item\">' + item + '</li>\\n'; }).join('') + '</ul>\\n';\n" +
+            "        if (nbPages > 1) {\n" +
+            "            html += '<p class=\"pager\">' + (page > 1 ? pagerLink(page - 1, '&lt; previous') : '') + ' page ' + page + ' / ' + nbPages + ' ' +\n" +
+            "                (page < nbPages ? pagerLink(page + 1, 'next &gt;') : '') + '</p>\\n';\n" +
+            "        }\n" +
+            "        element.innerHTML = html;\n" +
+            "        element.onclick = function (e) {\n" +
+            "            var pager = e.target.closest('a[data-page]');\n" +
+            "            if (pager) {\n" +
+            "                e.preventDefault();\n" +
+            "                showList(column, caption, items, actions, Number(pager.getAttribute('data-page')));\n" +
+            "                return;\n" +
+            "            }\n" +
+            "            var target = e.target.closest('a.nav-link');\n" +
+            "            if (!target) return;\n" +
+            "            e.preventDefault();\n" +
+            "            var lis = element.querySelectorAll('ul.navbar-nav > li');\n" +
+            "            for (var i = 0; i < lis.length; ++i) lis[i].classList.remove('active');\n" +
+            "            target.closest('li').classList.add('active');\n" +
+            "            actions[target.getAttribute('data-item')]();\n" +
+            "        };\n" +
+            "        // the first link of a later page is selected like the active link of the first page\n" +
+            "        var first = element.querySelector(page > 1 ? 'a.nav-link' : '#act');\n" +
+            "        if (first) first.click();\n" +
+            "    }\n" +
+            "\n" +
+            "    function clear(column) {\n" +
+            "        document.getElementById(column).innerHTML = '';\n" +
+            "    }\n" +
+            "\n" +
+            "    function showClusters() {\n" +
+            "        var items = [link(0, 'All patterns', true)];\n" +
+            "        var actions = [function () { showPatterns(null); }];\n" +
+            "        index.clusters.forEach(function (cluster, i) {\n" +
+            "            items.push(link(i + 1, 'cluster ' + (i + 1), false));\n" +
+            "            actions.push(function () { showPatterns(cluster); });\n" +
+            "        });\n" +
+            "        showList('cluster', 'Clusters', items, actions);\n" +
+            "    }\n" +
+            "\n" +
+            "    function support(supports, patternID) {\n" +
+            "        return patternID < supports.length ? supports[patternID] : 0;\n" +
+            "    }\n" +
+            "\n" +
+            "    // show all patterns, or the patterns of a cluster\n" +
+            "    function showPatterns(cluster) {\n" +
+            "        var items = [], actions = [];\n" +
+            "        var patternIDs = cluster;\n" +
+            "        if (!patternIDs) {\n" +
+            "            patternIDs = [];\n" +
+            "            for (var i = 1; i <= index.nbPatterns; ++i) patternIDs.push(i);\n" +
+            "        }\n" +
+            "        patternIDs.forEach(function (patternID, i) {\n" +
+            "            var labels = index.twoClass ? ['old', 'new'] : ['_'];\n" +
+            "            var links = labels.map(function (label, j) {\n" +
+            "                actions.push(function () { showMatches(patternID, label); });\n" +
+            "                if (!index.twoClass && !cluster) return link(actions.length - 1, 'pattern ' + patternID, i === 0);\n" +
+            "                return link(actions.length - 1, j === 0\n" +
+            "                    ? support(index.oldSupports, patternID) + ' matches pos'\n" +
+            "                    : support(index.newSupports, patternID) + ' matches nag', i === 0 && j === 0);\n" +
+            "            });\n" +
+            "            items.push(!index.twoClass && !cluster ? links[0] : 'pattern-' + patternID + ': \\n' + links.join('   /\\n'));\n" +
+            "        });\n" +
+            "        var caption = cluster ? 'List of patterns' : index.twoClass ? 'List patterns ' : ' Patterns: ' + index.title;\n" +
+            "        showList('left', caption, items, actions);\n" +
+            "        if (items.length === 0) { clear('center'); clear('right'); }\n" +
+            "    }\n" +
+            "\n" +
+            "    function showMatches(patternID, label) {\n" +
+            "        require('pattern_' + patternID + '_' + label, function (matches) {\n" +
+            "            matches = matches || [];\n" +
+            "            var items = matches.map(function (match, k) { return link(k, 'match-' + (k + 1) + ': ' + match.name, k === 0); });\n" +
+            "            var actions = matches.map(function (match) { return function () { showMatch(match, label); }; });\n" +
+            "            showList('center', 'Matches of pattern-' + patternID, items, actions);\n" +
+            "            if (items.length === 0) clear('right');\n" +
+            "        });\n" +
+            "    }\n" +
+            "\n" +
+            "    // write a line with the markers of its spans\n" +
+            "    function markLine(line, spans) {\n" +
+            "        var html = '', position = 0;\n" +
+            "        spans.forEach(function (span) {\n" +
+            "            var tag = TAGS[span[2]];\n" +
+            "            html += line.substring(position, span[0]) + '<' + tag + '>' +\n" +
+            "                (span[3] === null ? line.substring(span[0], span[1]) : span[3]) + '</' + tag + '>';\n" +
+            "            position = span[1];\n" +
+            "        });\n" +
+            "        return html + line.substring(position);\n" +
+            "    }\n" +
+            "\n" +
+            "    function gapLine(nbLines) {\n" +
+            "        return '<pre class=\"gap\">... ' + nbLines + (nbLines === 1 ? ' line' : ' lines') + ' ...</pre>\\n';\n" +
+            "    }\n" +
+            "\n" +
+            "    function showMatch(match, label) {\n" +
+            "        require('source_' + label + '_' + match.source, function (source) {\n" +
+            "            if (!source) { clear('right'); return; }\n" +
+            "            var marks = {};\n" +
+            "            match.marks.forEach(function (mark) { marks[mark[0]] = mark; });\n" +
+            "            var html = 'Fullname: ' + source.name;\n" +
+            "            if (index.context >= 0) html += ' <a href=\"' + source.uri + '\" target=\"_blank\">whole file</a>';\n" +
+            "            html += '<code>\\n';\n" +
+            "            // with a context, only the lines around the matched lines are shown\n" +
+            "            var shown = null, gap = 0;\n" +
+            "            if (index.context >= 0) {\n" +
+            "                shown = {};\n" +
+            "                match.marks.forEach(function (mark) {\n" +
+            "                    for (var n = mark[0] - index.context; n <= mark[0] + index.context; ++n) shown[n] = true;\n" +
+            "                });\n" +
+            "            }\n" +
+            "            source.lines.forEach(function (line, i) {\n" +
+            "                if (shown && !shown[i + 1]) { ++gap; return; }\n" +
+            "                if (gap > 0) html += gapLine(gap);\n" +
+            "                gap = 0;\n" +
+            "                var mark = marks[i + 1];\n" +
+            "                if (!mark) html += '<pre>' + (i + 1) + ' ' + line + '</pre>\\n';\n" +
+            "                else if (mark[1] === 0) html += '<pre><mark>' + (i + 1) + ' <cm>' + line + '</cm></mark></pre>';\n" +
+            "                else if (mark[1] === 1) html += '<pre><mark>' + (i + 1) + ' <kc>' + markLine(line, mark[2]) + '</kc></mark></pre>';\n" +
+            "                else html += '<pre><mark>' + (i + 1) + ' ' + markLine(line, mark[2]) + '</mark></pre>';\n" +
+            "            });\n" +
+            "            if (gap > 0) html += gapLine(gap);\n" +
+            "            document.getElementById('right').innerHTML = html + '</code>\\n';\n" +
+            "        });\n" +
+            "    }\n" +
+            "\n" +
+            "    document.addEventListener('DOMContentLoaded', function () {\n" +
+            "        require('index', function (value) {\n" +
+            "            index = value;\n" +
+            "            showClusters();\n" +
+            "        });\n" +
+            "    });\n" +
+            "\n" +
+            "    return {load: load};\n" +
+            "})();\n";
+
+}
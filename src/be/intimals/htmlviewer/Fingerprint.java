@@ -0,0 +1,64 @@
+package be.intimals.htmlviewer;
+
+import java.io.File;
+
+/**
+ * 64 bits FNV-1a hash of the inputs of a page
+ *
+ * values are added one by one, strings are hashed with their length
+ * so that consecutive strings cannot be confused
+ */
+public class Fingerprint {
+
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET;
+
+    public Fingerprint add(long value){
+        for(int i = 0; i < 8; ++i){
+            hash = (hash ^ (value & 0xff)) * PRIME;
+            value >>>= 8;
+        }
+        return this;
+    }
+
+    public Fingerprint add(boolean value){
+        return add(value ? 1 : 0);
+    }
+
+    public Fingerprint add(String value){
+        if(value == null) return add(-1);
+        add(value.length());
+        for(int i = 0; i < value.length(); ++i){
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return this;
+    }
+
+    public Fingerprint add(int[] values){
+        add(values.length);
+        for(int value : values) add(value);
+        return this;
+    }
+
+    /**
+     * add size and modification time of a file, -1 if the file does not exist
+     * @param file
+     * @return
+     */
+    public Fingerprint addFile(File file){
+        if(!file.exists()) return add(-1);
+        return add(file.length()).add(file.lastModified());
+    }
+
+    public long get(){return hash;}
+
+    @Override
+    public String toString(){
+        return String.format("%016x", hash);
+    }
+
+}
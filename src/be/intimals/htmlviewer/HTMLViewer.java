@@ -1,18 +1,16 @@
 package be.intimals.htmlviewer;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import java.awt.*;
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import static be.intimals.htmlviewer.Utils.*;
-import static be.intimals.htmlviewer.Variables.*;
 
 public class HTMLViewer {
 
@@ -20,787 +18,361 @@ public class HTMLViewer {
     private String inputSourceDir;
     private String inputResultDir;
 
-    //store line and column numbers of a match
-    private Map<Integer, Set<String> > matchedLines;
-    //store node IDs of a match in XML file
-    private Set<Integer> nodeIdOfMatch;
-    //python source code
-    private List<String> pythonSource;
+    //parsed source files shared by all matches, keyed by Python file name
+    private LruCache<String, SourceFile> sourceCache;
+    //span files of the source XML files, null to parse the XML files
+    private SpanCache spanCache;
+    //writer of the html files
+    private HtmlOutput output;
+    //match pages already written in this run
+    private RenderRegistry renderRegistry = new RenderRegistry();
+    //keys of the pages of the previous and of this run, null when all pages are generated
+    private PageManifest manifest;
+    //keys of the pages of this run
+    private PageKeys keys;
+    //read the result model from its binary snapshot when it is up to date
+    private boolean useSnapshot;
+    //write the data set of the single page viewer instead of the html pages
+    private boolean singlePage;
+    //expose the metrics of the run through JMX
+    private boolean jmx;
+    //maximum number of entries of a list page, 0 for no limit
+    private int pageSize;
+    //number of lines shown around the matched lines of a match page, -1 for the whole file
+    private int context;
+
+    //number of threads rendering match pages
+    private int nbThreads;
+    //workers rendering match pages, null when match pages are rendered by the calling thread
+    private ExecutorService workers;
+    //match pages submitted to the workers
+    private List<Future<?>> tasks = new ArrayList<>();
+    //pack file receiving the pages, null when the pages are written to the html directory
+    private PackWriter pack;
 
     public HTMLViewer(File _inputSourceDir, File _inputResultDir, File _htmlDir){
+        this(_inputSourceDir, _inputResultDir, _htmlDir, new ViewerOptions());
+    }
+
+    public HTMLViewer(File _inputSourceDir, File _inputResultDir, File _htmlDir, ViewerOptions options){
         this.inputSourceDir = _inputSourceDir.getAbsolutePath();
         this.inputResultDir = _inputResultDir.getAbsolutePath();
         this.htmlDir = _htmlDir.getAbsolutePath();
+        this.sourceCache = new LruCache<>("source cache", options.getSourceCacheBytes(), SourceFile::estimateSize);
+        this.spanCache = options.createSpanCache(inputResultDir);
+        this.nbThreads = options.getThreads();
+        if(options.isPack()){
+            try {
+                this.pack = new PackWriter(options.getPackFile(inputResultDir), options.isPackCompress());
+            }catch (IOException e){
+                //the pages are written to the html directory
+                e.printStackTrace();
+            }
+        }
+        this.output = new HtmlOutput(htmlDir, options.isAsyncWrites(), pack);
+        this.useSnapshot = options.isSnapshot();
+        this.singlePage = options.isSinglePage();
+        this.jmx = options.isJmx();
+        this.pageSize = options.getPageSize();
+        this.context = options.getContext();
+        if(options.isIncremental()) this.manifest = new PageManifest(_htmlDir);
     }
 
     /**
      * show patterns in web browser
      */
     public void view(){
+        boolean created = generate();
+        if(created && pack != null) {
+            System.out.println("view the pages of " + pack.getFile() + " with --serve --pack");
+        }else if(created) {
+            try {
+                File htmlFile = new File(htmlDir + "/_index.html");
+                Desktop.getDesktop().browse(htmlFile.toURI());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * create the html files of the patterns without showing them
+     * @return true if the pages were created
+     */
+    public boolean generate(){
+        Metrics.reset();
+        if(jmx) Metrics.registerMBean();
+        long start = System.nanoTime();
         //get configuration file
         String finalConfig = getConfigFileName(new File(inputResultDir));
         try {
             //read config file to find these information
+            long configStart = System.nanoTime();
             Config config = new Config(finalConfig);
+            Metrics.time("config.load", configStart);
             // create html files
-            createHTMLFiles(config);
+            createHTMLFiles(config, finalConfig);
+            //remove the pages of the previous run which are not generated anymore
+            if(manifest != null){
+                //the manifest records the queued pages once they are written
+                output.flush();
+                int deleted = manifest.save();
+                Metrics.set("incremental.kept", manifest.getKept());
+                Metrics.set("incremental.deleted", deleted);
+                System.out.println("incremental: " + manifest.getKept() + " pages kept, " +
+                        (manifest.size() - manifest.getKept()) + " pages regenerated, " + deleted + " stale pages deleted");
+            }
         }catch (Exception e){
             e.printStackTrace();
         }
+        //wait for the queued pages
+        output.flush();
         //view result in browser
-        if(Files.exists(Paths.get(htmlDir+"/patterns.html"))) {
-            try {
-                initHTMLFiles(htmlDir, getLastName(inputResultDir));
-                File htmlFile = new File(htmlDir + "/_index.html");
-                Desktop.getDesktop().browse(htmlFile.toURI());
-            } catch (Exception e) {
-                e.printStackTrace();
+        boolean created = output.exists(singlePage ? DataRenderer.INDEX_FILE : "patterns.html");
+        if(created && singlePage){
+            for(Map.Entry<String, String> file : DataRenderer.coreFiles(getLastName(inputResultDir)).entrySet()){
+                output.write(file.getKey(), file.getValue());
             }
+        }else if(created){
+            initHTMLFiles(output, getLastName(inputResultDir));
         }
+        output.close();
+        Metrics.time("run", start);
+        System.out.println(sourceCache.report());
+        if(spanCache != null) System.out.println(spanCache.report());
+        System.out.println(renderRegistry.report());
+        System.out.println(output.report());
+        System.out.println(writeMetrics());
+        return created;
     }
 
     /**
-     * create output html file for patterns from two classes
-     * @param config
+     * set the counters of the run and write its metrics reports to the result directory
+     * @return a one-line summary of the reports
      */
-    private void createHTMLFiles(Config config) {
-        //TODO: how to show 2 clusters of pos and nag separately
-        // read all clusters
-        String matchesFile;
-        if(config.get2Class()){
-            matchesFile = inputResultDir+"/"+ getLastName(config.getOutputMatches1());
-            // create html file for all patterns
-            createPatternsHTMLForTwoClass(config);
-        }else{
-            matchesFile = inputResultDir+"/"+ getLastName(config.getOutputMatches());
-            // create html file for all patterns
-            createPatternsHTMLForOneClass(config);
+    private String writeMetrics(){
+        Metrics.set("output.files", output.getFilesWritten());
+        Metrics.set("output.bytes", output.getBytesWritten());
+        Metrics.set("output.failures", output.getFailures());
+        Metrics.setCache("sourceCache", sourceCache);
+        if(spanCache != null){
+            Metrics.set("spans.mapped", spanCache.getMapped());
+            Metrics.set("spans.built", spanCache.getBuilt());
         }
-
-        String clusterFile = matchesFile.substring(0, matchesFile.length()-4)+"_clusters.xml";
-
-        // create html content for this cluster
-        String clusterContent = createClusterContent(config, clusterFile);
-
-        //create a clusters.html to list all patterns found
-        writeHTML(htmlDir+"/clusters.html", clusterContent);
+        return Metrics.writeReports(new File(inputResultDir));
     }
 
-
     /**
-     * create html file for all patterns from a class
+     * create output html file for patterns from two classes
      * @param config
+     * @param configFile : name of the configuration file
      */
-    private void createPatternsHTMLForOneClass(Config config) {
-        //get all matches
-        String matchesFileName = inputResultDir+"/"+ getLastName(config.getOutputMatches());
-        NodeList allMatches = readAllTagName(matchesFileName, "match");
-
-        //get all patterns
-        String patternFileName = inputResultDir+"/"+ getLastName(config.getOutputPath());
-        NodeList allPatterns = readAllTagName(patternFileName,"subtree");
-        int nbPattern = allPatterns.getLength();//count number of patterns
-
-        //for each pattern find its matches from allMatches
-        String patternContent = HTMLHEADER;
-        patternContent += AJAXString;
-        patternContent += "<p> Patterns: " + getLastName(inputResultDir) +"</p>\n";
-        patternContent += "<ul class=\"navbar-nav\">\n";
-        for(int i = 1; i<=nbPattern; ++i){
-            String aPattern;
-            if(i == 1){
-                aPattern = "<li class=\"nav-item\"><a class=\"nav-link\" href= \"pattern_"+i+"_matches__.html\" target=\"center\" id=\"act\">pattern "+i+"</a></li>";
-            }else {
-                aPattern = "<li class=\"nav-item\"><a class=\"nav-link\" href= \"pattern_" + i + "_matches__.html\" target=\"center\">pattern " + i + "</a></li>";
+    private void createHTMLFiles(Config config, String configFile) throws Exception {
+        //TODO: how to show 2 clusters of pos and nag separately
+        // read patterns, matches and clusters once for all views
+        long start = System.nanoTime();
+        ResultModel model = useSnapshot
+                ? ResultModel.loadCached(config, configFile, inputSourceDir, inputResultDir)
+                : ResultModel.load(config, inputSourceDir, inputResultDir);
+        Metrics.time("results.load", start);
+        if(manifest != null) keys = new PageKeys(model, getLastName(inputResultDir), pageSize, context);
+        if(nbThreads > 1) workers = Executors.newFixedThreadPool(nbThreads);
+        try {
+            //index all source XML files in parallel before rendering,
+            //in incremental mode only the sources of the regenerated pages are indexed, on demand
+            if(spanCache != null && manifest == null) prepareSpanFiles(model);
+            if(singlePage){
+                createDataFiles(model);
+            }else{
+                createPages(model);
             }
-            patternContent += aPattern+"\n";
-            findMatchesOfPattern(i, allMatches, inputSourceDir, "_");
+            //wait for the match pages
+            waitForTasks();
+        }finally {
+            if(workers != null) workers.shutdownNow();
+            workers = null;
         }
-        patternContent += "</ul>\n";
-        patternContent += HTMLCLOSE+"\n";
-        //create a patterns.html to list all patterns found
-        writeHTML(htmlDir+"/patterns.html", patternContent);
     }
 
     /**
-     * create html file for all patterns from two classes
-     * @param config
+     * create the html pages of the lists of patterns, clusters and matches and of each match
+     * @param model
      */
-    private void createPatternsHTMLForTwoClass(Config config) {
-
-        String matchesFile1 = inputResultDir+"/"+ getLastName(config.getOutputMatches1());
-        String matchesFile2 = inputResultDir+"/"+ getLastName(config.getOutputMatches2());
-
-        String oldInputSourceDir = inputSourceDir+"/"+getLastName(config.getInputFiles1());//"pos";
-        String newInputSourceDir = inputSourceDir+"/"+getLastName(config.getInputFiles2());//"nag";
-
-        //read all matches from matches files
-        NodeList allMatchesOld = readAllTagName(matchesFile1,"match");
-        NodeList allMatchesNew = readAllTagName(matchesFile2, "match");
-
-        //for each pattern find matches in the old and new
-        String patternFile = inputResultDir+"/"+getLastName(config.getOutputPath());//"q1_input_5_patterns.xml";
-        NodeList allPatterns = readAllTagName(patternFile,"subtree");
-
-        int nbPattern = allPatterns.getLength(); //count number of patterns
-        //for each pattern find its matches from allMatches
-        String patternContent = HTMLHEADER + AJAXString;
-        patternContent += "<p>List patterns </p>\n";
-        patternContent += "<ul class=\"navbar-nav\">\n";
-        int count = 1;
-        for(int i = 1; i<=nbPattern; ++i){
-            //get support
-            String[] support = findSupport(i, allPatterns).split("-");
-            int oldSup = Integer.valueOf(support[0]);
-            int newSup = Integer.valueOf(support[1]);
-
-            //create a link for this pattern in the pattern file
-            String aPattern;
-            if(i == 1) {
-                aPattern =
-                        "<li class=\"nav-item\">" + "pattern-" + i + ": \n" +
-                                "<a class=\"nav-link\" href= \"pattern_" + i + "_matches_old.html\" target=\"center\" id=\"act\">" + oldSup + " matches pos</a>" +
-                                "   /\n" +
-                                "<a class=\"nav-link\" href= \"pattern_" + i + "_matches_new.html\" target=\"center\">" + newSup + " matches nag</a>" +
-                                "</li>\n";
-            }else{
-                aPattern =
-                        "<li class=\"nav-item\">" + "pattern-" + i + ": \n" +
-                                "<a class=\"nav-link\" href= \"pattern_" + i + "_matches_old.html\" target=\"center\">" + oldSup + " matches pos</a>" +
-                                "   /\n" +
-                                "<a class=\"nav-link\" href= \"pattern_" + i + "_matches_new.html\" target=\"center\">" + newSup + " matches nag</a>" +
-                                "</li>\n";
+    private void createPages(ResultModel model){
+        PageRenderer renderer = new PageRenderer(model, getLastName(inputResultDir), sourceCache, spanCache, pageSize, context);
+        // create html file for all patterns
+        for(int page = 1; page <= renderer.countPatternsPages(); ++page){
+            int pageNr = page;
+            writePage(PageRenderer.pageName("patterns.html", page), () -> keys.listPage(keys.patternsPage(), pageNr),
+                    out -> renderer.writePatternsPage(pageNr, out));
+        }
+        //for each pattern find its matches in each class
+        for(int i = 1; i <= model.getNbPatterns(); ++i){
+            for(MatchSet matchSet : model.getMatchSets()){
+                findMatchesOfPattern(i, matchSet, renderer);
             }
-
-            patternContent += aPattern;
-
-            //create equivalent matches for this pattern
-            findMatchesOfPattern(i, allMatchesOld, oldInputSourceDir, "old");
-            findMatchesOfPattern(i, allMatchesNew, newInputSourceDir, "new");
         }
-        patternContent += "</ul>\n";
-        patternContent += HTMLCLOSE+"\n";
-        //create a patterns.html to list all patterns found
-        writeHTML(htmlDir+"/patterns.html", patternContent);
-    }
-
-    /**
-     * create html content for clusters
-     * @param config
-     * @param clusterFile
-     * @return
-     */
-    private String createClusterContent(Config config, String clusterFile) {
-
-        NodeList allClusters = readAllTagName(clusterFile, "cluster");
-
-        String clusterContent = HTMLHEADER + AJAXString;
-        clusterContent += "<p>Clusters</p>\n";
-        clusterContent += "<ul class=\"navbar-nav\">\n";
-
-        // link to all patterns
-        clusterContent += "<li class=\"nav-item\">\n"+
-                            "<a class=\"nav-link\" href= \"patterns.html\" target=\"left\" id=\"act\">All patterns</a>\n" +
-                            "</li>\n";
 
         // for each cluster, create a list of links to its patterns
-        int countCluster = 1;
-        for(int clu = 0; clu < allClusters.getLength(); ++clu){
-            if(allClusters.item(clu).getNodeType() == Node.ELEMENT_NODE){
-                // get all pattern in this cluster
-                NodeList patterns = allClusters.item(clu).getChildNodes();
-                //create a cluster_i_patterns.html containing link to patterns
-                if(config.get2Class()){
-                    // create html file containing all patterns in this cluster
-                    createPatternsHTMLForClusterInTwoClass(countCluster, patterns, config);
-                }else {
-                    // create html file containing all patterns in this cluster
-                    createPatternsHTMLForClusterInOneClass(countCluster, patterns, config);
-                }
-                //create a link to this file
-                clusterContent += "<li class=\"nav-item\">\n" +
-                        "<a class=\"nav-link\" href= \"cluster_"+countCluster+"_patterns.html\" target=\"left\">cluster "+countCluster+"</a>"+
-                        "</li>\n";
-                ++countCluster;
+        for(int countCluster = 1; countCluster <= model.getClusters().size(); ++countCluster){
+            int clusterID = countCluster;
+            for(int page = 1; page <= renderer.countClusterPages(clusterID); ++page){
+                int pageNr = page;
+                writePage(PageRenderer.pageName(PageRenderer.clusterPageName(clusterID), page),
+                        () -> keys.listPage(keys.clusterPage(clusterID), pageNr),
+                        out -> renderer.writeClusterPage(clusterID, pageNr, out));
             }
-
-        }
-        clusterContent += "</ul>\n";
-        clusterContent += HTMLCLOSE+"\n";
-        return clusterContent;
-    }
-
-    /**
-     * create output html file for patterns from two classes
-     * @param config
-     */
-    private void createPatternsHTMLForClusterInOneClass(int clusterID, NodeList patterns, Config config) {
-
-        //get matches
-        String matchesFile = inputResultDir+"/"+ getLastName(config.getOutputMatches());
-
-        //read all matches from matches files
-        NodeList allMatchesOld = readAllTagName(matchesFile,"match");
-
-        //read all patterns
-        String patternFile = inputResultDir+"/"+getLastName(config.getOutputPath());//"q1_input_5_patterns.xml";
-        NodeList allPatterns = readAllTagName(patternFile,"subtree");
-
-        //for each pattern find its matches from allMatches
-        String patternContent = HTMLHEADER + AJAXString;
-        patternContent += "<p>List of patterns</p>\n";
-        patternContent += "<ul class=\"navbar-nav\">\n";
-        int count = 1;
-        for(int i = 0; i < patterns.getLength(); ++i){
-            if(patterns.item(i).getNodeType() == Node.ELEMENT_NODE){
-                //get pattern ID
-                int patternID = Integer.valueOf(patterns.item(i).getAttributes().getNamedItem("ID").getNodeValue());
-                //get support
-                String[] support = findSupport(patternID, allPatterns).split("-");
-                int oldSup = Integer.valueOf(support[0]);
-                //int newSup = Integer.valueOf(support[1]);
-
-                //create a link for this pattern
-                String aPattern;
-                if(count == 1) {
-                    aPattern =
-                            "<li class=\"nav-item\">" + "pattern-" + (patternID) + ": \n" +
-                                    "<a class=\"nav-link\" href= \"pattern_" + (patternID) + "_matches__.html\" target=\"center\" id=\"act\">" + oldSup + " matches pos</a>" +
-                                    "\n";
-                    ++count;
+            //create equivalent matches for the patterns of this cluster
+            for(int patternID : model.getClusters().get(clusterID - 1)){
+                if(model.isTwoClass()){
+                    findMatchesOfPattern(patternID, model.getMatchSets().get(0), renderer);
+                    findMatchesOfPattern(patternID, model.getMatchSets().get(1), renderer);
                 }else{
-                    aPattern =
-                            "<li class=\"nav-item\">" + "pattern-" + (patternID) + ": \n" +
-                                    "<a class=\"nav-link\" href= \"pattern_" + (patternID) + "_matches__.html\" target=\"center\">" + oldSup + " matches pos</a>" +
-                                    "\n";
-
+                    findMatchesOfPattern(patternID+1, model.getMatchSets().get(0), renderer);
                 }
-
-                patternContent += aPattern;
-
-                //create equivalent matches for this pattern
-                findMatchesOfPattern(patternID+1, allMatchesOld, inputSourceDir, "_");
-
             }
-
         }
-        patternContent += "</ul>\n";
-        patternContent += HTMLCLOSE+"\n";
-        //create a patterns.html to list all patterns found
-        writeHTML(htmlDir+"/cluster_"+clusterID+"_patterns.html", patternContent);
-    }
-
-    /**
-     * create output html file for patterns from two classes
-     * @param config
-     */
-    private void createPatternsHTMLForClusterInTwoClass(int clusterID, NodeList patterns, Config config) {
-
-        String matchesFile1 = inputResultDir+"/"+ getLastName(config.getOutputMatches1());
-        String matchesFile2 = inputResultDir+"/"+ getLastName(config.getOutputMatches2());
-
-        String oldInputSourceDir = inputSourceDir+"/"+getLastName(config.getInputFiles1());//"pos";
-        String newInputSourceDir = inputSourceDir+"/"+getLastName(config.getInputFiles2());//"nag";
-
-        //read all matches from matches files
-        NodeList allMatchesOld = readAllTagName(matchesFile1,"match");
-        NodeList allMatchesNew = readAllTagName(matchesFile2, "match");
-
-        //for each pattern find matches in the old and new
-        String patternFile = inputResultDir+"/"+getLastName(config.getOutputPath());//"q1_input_5_patterns.xml";
-        NodeList allPatterns = readAllTagName(patternFile,"subtree");
-
-        //for each pattern find its matches from allMatches
-        String patternContent = HTMLHEADER + AJAXString;
-        patternContent += "<p>List of patterns</p>\n";
-        patternContent += "<ul class=\"navbar-nav\">\n";
-        int count = 1;
-        for(int i = 0; i < patterns.getLength(); ++i){
-            if(patterns.item(i).getNodeType() == Node.ELEMENT_NODE){
-                //get pattern ID
-                int patternID = Integer.valueOf(patterns.item(i).getAttributes().getNamedItem("ID").getNodeValue());
-                //get support
-                String[] support = findSupport(patternID, allPatterns).split("-");
-                int oldSup = Integer.valueOf(support[0]);
-                int newSup = Integer.valueOf(support[1]);
-
-                //create a link for this pattern
-                String aPattern;
-                if(count == 1) {
-                    aPattern =
-                            "<li class=\"nav-item\">" + "pattern-" + (patternID) + ": \n" +
-                                    "<a class=\"nav-link\" href= \"pattern_" + (patternID) + "_matches_old.html\" target=\"center\" id=\"act\">" + oldSup + " matches pos</a>" +
-                                    "   /\n" +
-                                    "<a class=\"nav-link\" href= \"pattern_" + (patternID) + "_matches_new.html\" target=\"center\">" + newSup + " matches nag</a>" +
-                                    "</li>\n";
-                    ++count;
-                }else{
-                    aPattern =
-                            "<li class=\"nav-item\">" + "pattern-" + (patternID) + ": \n" +
-                                    "<a class=\"nav-link\" href= \"pattern_" + (patternID) + "_matches_old.html\" target=\"center\">" + oldSup + " matches pos</a>" +
-                                    "   /\n" +
-                                    "<a class=\"nav-link\" href= \"pattern_" + (patternID) + "_matches_new.html\" target=\"center\">" + newSup + " matches nag</a>" +
-                                    "</li>\n";
-
-                }
-
-                patternContent += aPattern;
-
-                //create equivalent matches for this pattern
-                findMatchesOfPattern(patternID, allMatchesOld, oldInputSourceDir, "old");
-                findMatchesOfPattern(patternID, allMatchesNew, newInputSourceDir, "new");
-            }
 
+        //create a clusters.html to list all clusters found
+        for(int page = 1; page <= renderer.countClustersPages(); ++page){
+            int pageNr = page;
+            writePage(PageRenderer.pageName("clusters.html", page), () -> keys.listPage(keys.clustersPage(), pageNr),
+                    out -> renderer.writeClustersPage(pageNr, out));
         }
-        patternContent += "</ul>\n";
-        patternContent += HTMLCLOSE+"\n";
-        //create a patterns.html to list all patterns found
-        writeHTML(htmlDir+"/cluster_"+clusterID+"_patterns.html", patternContent);
     }
 
-
     /**
-     * for each match of the given patternID create a html file
-     * @param patternID
-     * @param allMatches
-     * @param inputDir
+     * create the data files of the single page viewer: the index,
+     * the matches of each pattern listed in the page and the lines of each source file
+     * @param model
      */
-    private void findMatchesOfPattern(int patternID, NodeList allMatches, String inputDir, String label){
-        try {
-            //for each match create a file named patternID_i_matchID_j
-            String matchesContent = HTMLHEADER + AJAXString;
-            matchesContent += "<p>Matches of pattern-"+patternID+"</p>\n";
-            matchesContent += "<ul class=\"navbar-nav\">\n";
-            int count = 1; //count number of matches
-            for (int i = 0; i < allMatches.getLength(); ++i) {
-                String matchID = allMatches.item(i).getAttributes().getNamedItem("PatternID").getNodeValue();
-                if (patternID == Integer.valueOf(matchID)) {
-                    Node match = allMatches.item(i);
-                    //get Python file name from a match
-                    String pyFileName = inputDir+"/"+getFileNameFromMatch(match);
-                    String xmlFile = pyFileName.substring(0, pyFileName.length() - 2) + "xml";
-                    //find lines of a match in xmlFile
-                    findLineVariableNames(match, xmlFile, pyFileName);
-                    //add markers to lines corresponding lines in python file
-                    String newContent = HTMLHEADER+
-                            "Fullname: "+ pyFileName +
-                            "<code>\n" +
-                            addMarkers()+
-                            "</code>\n" +
-                            HTMLCLOSE;
-                    //write patternID_match_ID content to html file
-                    String htmlFileName = "patternID_"+patternID+"_matchID_"+String.valueOf(count)+"_"+label+".html";
-                    writeHTML(htmlDir+"/"+htmlFileName, newContent);
-
-                    //add a link of match i^th to its matchesContent
-                    String fullName = getLastName(allMatches.item(i).getAttributes().getNamedItem("FullName").getNodeValue());
-
-                    // add link id="act" to the first match
-                    if(count == 1){
-                        matchesContent += "<li class=\"nav-item\"><a class=\"nav-link\" href=\""+htmlFileName+"\" target=\"right\" id=\"act\">match-"+count+": "+fullName+"</a></li>\n";
-                    }else{
-                        matchesContent += "<li class=\"nav-item\"><a class=\"nav-link\" href=\""+htmlFileName+"\" target=\"right\">match-"+count+": "+fullName+"</a></li>\n";
-                    }
-                    // increase number of visited match
-                    ++count;
-                }
-            }
-            //write pattern_ID_matches content to file
-            String tt = htmlDir+"/pattern_"+patternID+"_matches_"+label+".html";
-            matchesContent += "</ul>\n";
-            matchesContent += HTMLCLOSE;
-            writeHTML(tt, matchesContent);
-
-        }catch (Exception e){
-            e.printStackTrace();
+    private void createDataFiles(ResultModel model){
+        DataRenderer renderer = new DataRenderer(model, getLastName(inputResultDir), sourceCache, spanCache, pageSize, context);
+        writePage(DataRenderer.INDEX_FILE, () -> keys.dataIndex(), renderer::writeIndex);
+        //patterns of the list of all patterns and of the clusters
+        Set<Integer> patternIDs = new TreeSet<>();
+        for(int i = 1; i <= model.getNbPatterns(); ++i){
+            patternIDs.add(i);
         }
-    }
-
-    /**
-     * find lines and variable names of a match to add color markers
-     * @param match     : one match
-     * @param XMLFile   : XML file
-     */
-    private void findLineVariableNames(Node match, String XMLFile, String PythonFile){
-        //store lines and variable names
-        matchedLines = new HashMap<>();
-        //store match node ids of a match
-        nodeIdOfMatch = getNodeIdOfMatch(match);
-        //read python file
-        pythonSource = readPyFile(PythonFile);
-        //read XML document
-        Document doc = readXML(XMLFile);
-        //get all nodes of the match
-        NodeList nodes = match.getChildNodes();
-        //find line number of node IDs in XML file
-        for(int i=0; i<nodes.getLength(); ++i){
-            if(nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
-                String id = nodes.item(i).getAttributes().getNamedItem("ID").getNodeValue();
-                //find line and col number of this id in the XML doc
-                findLineAndCol(id, doc.getDocumentElement());
-            }
+        for(int[] cluster : model.getClusters()){
+            for(int patternID : cluster) patternIDs.add(patternID);
         }
-    }
-
-    /**
-     * find all IDs of AST nodes in a match
-     * @param match : a match
-     * @return
-     */
-    private Set<Integer> getNodeIdOfMatch(Node match){
-        Set<Integer> temp = new HashSet<>();
-        NodeList nodes = match.getChildNodes();
-        for(int i=0; i<nodes.getLength(); ++i){
-            if(nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
-                String id = nodes.item(i).getAttributes().getNamedItem("ID").getNodeValue();
-                temp.add(Integer.valueOf(id));
+        for(MatchSet matchSet : model.getMatchSets()){
+            for(int patternID : patternIDs){
+                //the page shows an empty list for a pattern without data file
+                if(matchSet.countMatches(patternID) == 0) continue;
+                submit(() -> writePage(DataRenderer.patternFileName(patternID, matchSet.getLabel()),
+                        () -> keys.patternData(patternID, matchSet),
+                        out -> renderer.writePattern(patternID, matchSet, out)));
             }
-        }
-        return temp;
-    }
-
-
-    /**
-     * find all line and column number of an match id in a XML file
-     * @param matchID    : match ID of an XML node
-     * @param node      : root node of XML file
-     */
-    private void findLineAndCol(String matchID, Node node){
-        try {
-            if(node.getNodeType() == Node.ELEMENT_NODE) {
-                if(node.getAttributes().getNamedItem("ID") != null){
-                    //get ID value in XML file
-                    String nodeID = node.getAttributes().getNamedItem("ID").getNodeValue();
-                    if (nodeID.equals(matchID)) {//found nodeID in XML doc
-                        String nodeLineNr = node.getAttributes().getNamedItem("LineNr").getNodeValue();
-                        String nodeEndLineNr = node.getAttributes().getNamedItem("EndLineNr").getNodeValue();
-                        String nodeColNr = node.getAttributes().getNamedItem("ColNr").getNodeValue();
-                        String nodeEndColNr = node.getAttributes().getNamedItem("EndColNr").getNodeValue();
-
-                        int variableLength = Integer.valueOf(nodeEndColNr) - Integer.valueOf(nodeColNr);
-                        boolean isMultipleLines =  Integer.valueOf(nodeEndLineNr) > Integer.valueOf(nodeLineNr);
-                        String variableName="";
-                        //get variable name
-                        if( isMultipleLines && node.getChildNodes().getLength() == 1 ) {
-                            variableName = "multipleLineComment";
-                        }else {
-                            if (node.getChildNodes().getLength() == 1) { //leaf node
-                                variableName = nodeColNr + numSep + nodeEndColNr + strSep + node.getTextContent().trim();
-                            } else {
-                                //find dummy variable line and column number
-                                //intermediate node, keywords like ClassDef, FunctionDef, If,
-                                if (isDummyMatch(matchID, node) && !getDummyVariable(node).isEmpty()) {
-                                    //System.out.println(node.getNodeName()+" "+getDummyVariable(node));
-                                    variableName = nodeColNr + numSep + nodeEndColNr + strSep + getDummyVariable(node) + strSep + "dummy";
-                                }else{
-                                    // Try, ExceptHandler, ExceptHandler
-                                    Set<String> exceptionKeywords = new HashSet<>(Arrays.asList("Try","ExceptHandler","ExceptHandler",""));
-                                    if(exceptionKeywords.contains(node.getNodeName())){
-                                        variableName = "exceptionKeywords";
-                                    }
-                                }
-                            }
-
-                        }
-
-                        //this node doesn't have variable name or dummy name, e.g, Module, Func, ...
-                        if(variableName.isEmpty()) return;
-
-                        if(variableName.equals("exceptionKeywords")){
-                            addLineAndVariables("exceptionKeywords", Integer.valueOf(nodeLineNr));
-                        }else{
-                            if( isMultipleLines && node.getChildNodes().getLength() > 1) {
-                                // dummy variable is in multiple lines, e.g, comments
-                                if(isDummyMatch(matchID, node) && !getDummyVariable(node).isEmpty()){
-                                    addMultipleLineID(nodeLineNr, nodeEndLineNr);
-                                }
-                            }else{
-                                // matched variable has multiple lines, e.g, comments
-                                if( isMultipleLines && node.getChildNodes().getLength() == 1){
-                                    addMultipleLineID(nodeLineNr, nodeEndLineNr);
-                                }else {
-                                    int lineLength = pythonSource.get(Integer.valueOf(nodeLineNr)-1).trim().length()-1;
-                                    if(variableLength == lineLength && !variableName.contains("\"\"\"") && !variableName.contains("#")) {
-                                        // add matched comment in single line
-                                        addLineAndVariables("", Integer.valueOf(nodeLineNr));
-                                    }
-                                    else {
-                                        // add matched variable in single line
-                                        addLineAndVariables(variableName, Integer.valueOf(nodeLineNr));
-                                    }
-                                }
-                            }
-                        }
-
-                    } else {//search matchID in children list
-                        if (node.hasChildNodes()) {
-                            NodeList nodeList = node.getChildNodes();
-                            for (int i = 0; i < nodeList.getLength(); ++i) {
-                                findLineAndCol(matchID, nodeList.item(i));
-                            }
-                        }
-                    }
-                }else{//search matchID from other nodes
-                    if (node.hasChildNodes()) {
-                        NodeList nodeList = node.getChildNodes();
-                        for (int i = 0; i < nodeList.getLength(); ++i) {
-                            findLineAndCol(matchID, nodeList.item(i));
-                        }
-                    }
-                }
+            for(int i = 0; i < matchSet.getFileNames().length; ++i){
+                int fileIndex = i;
+                submit(() -> writePage(DataRenderer.sourceFileName(matchSet.getLabel(), fileIndex),
+                        () -> keys.sourceData(matchSet, fileIndex),
+                        out -> renderer.writeSource(matchSet, fileIndex, out)));
             }
-        }catch (Exception e){
-            e.printStackTrace();
-        }
-    }
-
-    private void addMultipleLineID(String nodeLineNr, String nodeEndLineNr) {
-        for (int i = Integer.valueOf(nodeLineNr); i <= Integer.valueOf(nodeEndLineNr); ++i) {
-            //add an empty string to this line id
-            addLineAndVariables("", i);
         }
     }
 
     /**
-     * return true if the matchID is a dummy match
-     * @param matchID : match ID
-     * @param node : XML doc
-     * @return
+     * build the missing span files of the sources of all matches
+     * @param model
+     * @throws InterruptedException
      */
-    private boolean isDummyMatch(String matchID, Node node){
-        try {
-            if(node.getNodeType() == Node.ELEMENT_NODE) {
-                if(node.getAttributes().getNamedItem("ID") != null){
-                    //get ID value in XML file
-                    String nodeID = node.getAttributes().getNamedItem("ID").getNodeValue();
-                    if (nodeID.equals(matchID)) {//if found nodeID in XML doc
-                        NodeList nodeList = node.getChildNodes();
-                        for(int i=0; i<nodeList.getLength(); ++i){
-                            if(nodeList.item(i).getNodeType() == Node.ELEMENT_NODE)
-                                //if the ID of this child node is not in the nodeIdOfMatch then this node is a dummy node
-                                if(!nodeIdOfMatch.contains(Integer.valueOf(nodeList.item(i).getAttributes().getNamedItem("ID").getNodeValue())))
-                                    return true;
-                        }
-                    } else {//search matchID in children list
-                        if (node.hasChildNodes()) {
-                            NodeList nodeList = node.getChildNodes();
-                            for (int i = 0; i < nodeList.getLength(); ++i) {
-                                isDummyMatch(matchID, nodeList.item(i));
-                            }
-                        }
-                    }
-                }else{//Search matchID from other nodes
-                    if (node.hasChildNodes()) {
-                        NodeList nodeList = node.getChildNodes();
-                        for (int i = 0; i < nodeList.getLength(); ++i) {
-                            isDummyMatch(matchID, nodeList.item(i));
-                        }
-                    }
-                }
+    private void prepareSpanFiles(ResultModel model) throws InterruptedException {
+        //a source file holds the matches of several patterns, its span file is built by one task
+        Set<String> xmlFiles = new LinkedHashSet<>();
+        for(MatchSet matchSet : model.getMatchSets()){
+            for(String fullName : matchSet.getFileNames()){
+                xmlFiles.add(PageRenderer.xmlFileName(matchSet.getSourceDir()+"/"+getFileName(fullName)));
             }
-        }catch (Exception e){
-            e.printStackTrace();
         }
-        return false;
-    }
-
-    /**
-     * find variable of a dummy node
-     * @param node
-     * @return
-     */
-    private String getDummyVariable(Node node){
-        String dummy="";
-        if(node.hasChildNodes()){
-            NodeList nodeList = node.getChildNodes();
-            for(int i=0; i<nodeList.getLength(); ++i){
-                if(nodeList.item(i).getNodeType() == Node.ELEMENT_NODE){
-                    if(nodeList.item(i).hasChildNodes()){
-                        NodeList children = nodeList.item(i).getChildNodes();
-                        for(int j=0; j< children.getLength(); ++j){
-                            if(!children.item(j).getTextContent().equals("#text")){
-                                dummy = children.item(j).getTextContent().trim();
-                            }
-                        }
-                    }
-                }
-            }
+        for(String xmlFile : xmlFiles){
+            submit(() -> spanCache.prepare(xmlFile));
         }
-        return dummy;
+        waitForTasks();
     }
 
-
     /**
-     * add variable Name and it colNr to line i
-     * @param variableName : variable name
-     * @param lineID : line i^th
+     * write a page, in incremental mode only if its key changed since the previous run
+     * @param fileName : name of the page
+     * @param key : computes the key of the page, used in incremental mode only
+     * @param content : writes the content of the page
      */
-    private void addLineAndVariables(String variableName, int lineID) {
-        if(! matchedLines.containsKey(lineID)){
-            Set<String> val = new HashSet<>();
-            val.add(variableName);
-            matchedLines.put(lineID, val);
-        }else{
-            Set<String> val = matchedLines.get(lineID);
-            val.add(variableName);
-            matchedLines.put(lineID, val);
+    private void writePage(String fileName, Supplier<String> key, HtmlOutput.PageContent content){
+        if(manifest == null){
+            output.writePage(fileName, content);
+            return;
         }
+        String pageKey = key.get();
+        if(manifest.isUpToDate(fileName, pageKey)) return;
+        //in asynchronous mode the key is recorded by the writer thread, once the page is on disk
+        output.writePage(fileName, content, () -> manifest.put(fileName, pageKey));
     }
 
-
     /**
-     * add makers to Python file
-     * @return
+     * render a match page on a worker, or on the calling thread if there are no workers
+     * @param task
      */
-    private String addMarkers(){
-        StringBuilder sb = new StringBuilder();
-        try {
-            for(int i = 0; i<pythonSource.size(); ++i){
-                String line = pythonSource.get(i);
-                if(matchedLines.containsKey(i+1)){
-                    //System.out.println("old "+line);
-                    String newLine;
-                    // if this line contains an empty string this line is comment
-                    if(matchedLines.get(i+1).contains("")){
-                        newLine = "<pre><mark>"+(i+1)+" <"+COMMENT+">" + line + "</"+COMMENT+"></mark></pre>";
-                    }else{
-                        //add color marker to variable names
-                        line = addMarkerToVariable(line, matchedLines.get(i+1));
-                        //add color marker to keywords
-                        line = addMarkerToKeyword(line, keywords);
-                        //add marker to highlight entire line
-                        newLine = "<pre><mark>"+(i+1)+" " + line + "</mark></pre>";
-                    }
-                    sb.append(newLine);
-                    //System.out.println("new "+newLine);
-                }else{
-                    String newLine = "<pre>"+(i+1)+" " + line + "</pre>";
-                    sb.append(newLine);
-                    sb.append("\n");
-
-                }
-            }
-        }catch (Exception e){
-            e.printStackTrace();
+    private void submit(Runnable task){
+        if(workers == null){
+            task.run();
+        }else{
+            tasks.add(workers.submit(task));
         }
-        return sb.toString();
     }
 
-
     /**
-     * add color marker to variable names
-     * @param line : line of code
-     * @param variables : list of variable names
-     * @return
+     * wait until all submitted match pages are written
+     * @throws InterruptedException
      */
-    private String addMarkerToVariable(String line, Set<String> variables){
-        if(variables.contains("exceptionKeywords")){
-            return "<"+KEYCOLOR+">" + line + "</"+KEYCOLOR+">";
-        }
-        try {
-            while (!variables.isEmpty()) {
-                Iterator<String> variable = variables.iterator();
-                if (variable.hasNext()) {
-
-                    String element = variable.next();
-                    String[] temp = element.split(strSep); // dummy/variable = ColNr#EndColNr;variableName;dummy / ColNr#EndColNr;variableName
-
-                    String markedIdentifier;
-                    if (temp.length == 2) {
-                        markedIdentifier = "<" + VARCOLOR + ">" + temp[1] + "</" + VARCOLOR + ">";
-                    } else {
-                        markedIdentifier = "<" + DUMCOLOR + ">" + temp[1] + "</" + DUMCOLOR + ">";
-                    }
-                    //find the current colNr
-                    int from = Integer.valueOf(temp[0].split(numSep)[0]);
-                    int to = Integer.valueOf(temp[0].split(numSep)[1]);
-                    //replace marked identifier
-                    line = line.substring(0, from - 1) +
-                            markedIdentifier +
-                            line.substring(to);
-                    //remover current variable
-                    variable.remove();
-                    //update column number for other variables
-                    if (!variables.isEmpty()) {
-                        variables = updateVariableColNr(variables, from);
-                    }
-                }
+    private void waitForTasks() throws InterruptedException {
+        for(Future<?> task : tasks){
+            try {
+                task.get();
+            }catch (ExecutionException e){
+                e.getCause().printStackTrace();
             }
-        }catch (Exception e){
-            System.out.println("add color marker error");
-            System.out.println(line+" "+variables);
         }
-        return line;
+        tasks.clear();
     }
 
     /**
-     * add color marker to keywords
-     * @param line : line of code
-     * @return
+     * for each match of the given patternID create a html file
+     * @param patternID
+     * @param matchSet : matches of one class grouped by pattern ID
+     * @param renderer
      */
-    private String addMarkerToKeyword(String line, Set<String> keywords){
-        String[]temp = line.split(" ");
-        for(int i=0; i<temp.length; ++i){
-            if(!temp[i].isEmpty()) {
-                if (keywords.contains(temp[i].trim())) {
-                    String markedIdentifier = "<"+KEYCOLOR+">" + temp[i] + "</"+KEYCOLOR+">";
-                    int index = findIdentifierIndex(line, temp[i]);
-                    line = line.substring(0, index-1)+
-                            markedIdentifier+
-                            line.substring(index + temp[i].length()-1);
-                }
-            }
-        }
-        return line;
+    private void findMatchesOfPattern(int patternID, MatchSet matchSet, PageRenderer renderer){
+        //the pages of this pattern are already written by another view
+        if(!renderRegistry.claim(patternID, matchSet.getLabel())) return;
+        submit(() -> writeMatchesOfPattern(patternID, matchSet, renderer));
     }
 
     /**
-     * update ColNr of variables after inserting color markers
-     * @param variables
-     * @param from
-     * @return
+     * write the matches page of a pattern and a page for each of its matches
+     * @param patternID
+     * @param matchSet : matches of one class grouped by pattern ID
+     * @param renderer
      */
-    private Set<String> updateVariableColNr(Set<String> variables, int from) {
-        Set<String> newVariables = new HashSet<>();
-        for (Iterator<String> variableLoop = variables.iterator(); variableLoop.hasNext(); ) {
-            String element = variableLoop.next();
-            String[] temp = element.split(strSep);
-            int fromLoop = Integer.valueOf(temp[0].split(numSep)[0]);
-            int toLoop = Integer.valueOf(temp[0].split(numSep)[1]);
-            if (fromLoop > from) {
-                fromLoop += nbAddedCharacters; //number of added characters
-                toLoop += nbAddedCharacters; //number of added characters
-            }
-            //update colNr
-            String newVariable;
-            if (temp.length == 2) {
-                newVariable = String.valueOf(fromLoop) + numSep + toLoop + strSep + temp[1];
-            } else {
-                newVariable = String.valueOf(fromLoop) + numSep + toLoop + strSep + temp[1] + strSep + temp[2];
-            }
-            newVariables.add(newVariable);
+    private void writeMatchesOfPattern(int patternID, MatchSet matchSet, PageRenderer renderer){
+        long start = System.nanoTime();
+        String label = matchSet.getLabel();
+        //for each match create a file named patternID_i_matchID_j
+        for (int count = 1; count <= matchSet.countMatches(patternID); ++count) {
+            int matchCount = count;
+            writePage(PageRenderer.matchPageName(patternID, count, label),
+                    () -> keys.matchPage(patternID, matchCount, matchSet),
+                    out -> renderer.writeMatchPage(patternID, matchCount, matchSet, out));
         }
-        return newVariables;
-    }
-
-
-
-     /**
-     * return all nodes that have tagName name
-     * @param fileName : input xml file
-     * @param tagName  : tag name
-     * @return
-     */
-    private NodeList readAllTagName(String fileName, String tagName){
-        //read XML file
-        NodeList matches = null;
-        try {
-            Document doc = readXML(fileName);
-            matches = doc.getElementsByTagName(tagName);
-        }catch (Exception e){
-            e.printStackTrace();
+        //write pattern_ID_matches content to file
+        for(int page = 1; page <= renderer.countMatchesPages(patternID, matchSet); ++page){
+            int pageNr = page;
+            writePage(PageRenderer.pageName(PageRenderer.matchesPageName(patternID, label), page),
+                    () -> keys.listPage(keys.matchesPage(patternID, matchSet), pageNr),
+                    out -> renderer.writeMatchesPage(patternID, matchSet, pageNr, out));
         }
-        return matches;
+        Metrics.time("pattern.matches", start);
     }
 
 }
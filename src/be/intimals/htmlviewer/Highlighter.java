@@ -0,0 +1,173 @@
+package be.intimals.htmlviewer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+
+import static be.intimals.htmlviewer.Variables.*;
+
+/**
+ * add color markers to a line of code in a single pass
+ *
+ * the spans to mark (variables, dummy variables and keywords) are collected first,
+ * sorted once by start column and written left to right into one StringBuilder,
+ * so the columns of the spans never need to be shifted after a marker is inserted
+ *
+ * a highlighter is reused for all lines of a page and is not thread-safe
+ */
+public class Highlighter {
+
+    public static final int VARIABLE = 0;
+    public static final int DUMMY = 1;
+    public static final int KEYWORD = 2;
+
+    private static final String[] TAGS = {VARCOLOR, DUMCOLOR, KEYCOLOR};
+
+    //span i covers characters [start[i], end[i]) of the line
+    private int[] start = new int[8];
+    private int[] end = new int[8];
+    private int[] kind = new int[8];
+    //text written instead of the covered characters, null to keep them
+    private String[] text = new String[8];
+    private int size;
+
+    /**
+     * receives the spans kept by visit, in order
+     */
+    public interface SpanVisitor {
+        void span(int from, int to, int spanKind, String spanText) throws IOException;
+    }
+
+    /**
+     * remove all spans
+     */
+    public void clear(){
+        size = 0;
+    }
+
+    /**
+     * add a span to mark
+     * @param from : first character, 0-based
+     * @param to : character after the last one
+     * @param spanKind : VARIABLE, DUMMY or KEYWORD
+     * @param spanText : text written instead of the characters of the span, null to keep them
+     */
+    public void add(int from, int to, int spanKind, String spanText){
+        if(size == start.length){
+            start = Arrays.copyOf(start, 2 * size);
+            end = Arrays.copyOf(end, 2 * size);
+            kind = Arrays.copyOf(kind, 2 * size);
+            text = Arrays.copyOf(text, 2 * size);
+        }
+        start[size] = from;
+        end[size] = to;
+        kind[size] = spanKind;
+        text[size] = spanText;
+        ++size;
+    }
+
+    /**
+     * add a span for every keyword of the line that is not covered by another span
+     *
+     * a keyword is a word of the line delimited by spaces
+     * @param line : line of code
+     * @param keywords : keywords to mark
+     */
+    public void addKeywords(String line, Set<String> keywords){
+        int nbSpans = size;
+        int length = line.length();
+        int i = 0;
+        while(i < length){
+            //find the next word delimited by spaces
+            while(i < length && line.charAt(i) == ' ') ++i;
+            int from = i;
+            while(i < length && line.charAt(i) != ' ') ++i;
+            int to = i;
+            //trim other whitespace characters
+            while(from < to && line.charAt(from) <= ' ') ++from;
+            while(to > from && line.charAt(to - 1) <= ' ') --to;
+            if(from < to && keywords.contains(line.substring(from, to)) && !overlaps(from, to, nbSpans)){
+                add(from, to, KEYWORD, null);
+            }
+        }
+    }
+
+    private boolean overlaps(int from, int to, int nbSpans){
+        for(int s = 0; s < nbSpans; ++s){
+            if(from < end[s] && start[s] < to) return true;
+        }
+        return false;
+    }
+
+    /**
+     * write the line with its color markers
+     *
+     * spans overlapping a previous span or outside the line are ignored
+     * @param line : line of code
+     * @param out : receives the marked line
+     */
+    public void render(String line, StringBuilder out){
+        sortByStart();
+        int position = 0;
+        for(int s = 0; s < size; ++s){
+            if(!isKept(s, position, line)) continue;
+            out.append(line, position, start[s]);
+            String tag = TAGS[kind[s]];
+            out.append('<').append(tag).append('>');
+            if(text[s] == null){
+                out.append(line, start[s], end[s]);
+            }else{
+                out.append(text[s]);
+            }
+            out.append("</").append(tag).append('>');
+            position = end[s];
+        }
+        out.append(line, position, line.length());
+    }
+
+    /**
+     * visit the spans written by render, sorted by start column
+     * @param line : line of code
+     * @param visitor : receives the spans
+     * @throws IOException
+     */
+    public void visit(String line, SpanVisitor visitor) throws IOException {
+        sortByStart();
+        int position = 0;
+        for(int s = 0; s < size; ++s){
+            if(!isKept(s, position, line)) continue;
+            visitor.span(start[s], end[s], kind[s], text[s]);
+            position = end[s];
+        }
+    }
+
+    /**
+     * return false if a span overlaps a previous span or is outside the line
+     */
+    private boolean isKept(int s, int position, String line){
+        return start[s] >= position && end[s] <= line.length() && start[s] <= end[s];
+    }
+
+    /**
+     * insertion sort of the spans by start column, there are few spans per line
+     */
+    private void sortByStart(){
+        for(int i = 1; i < size; ++i){
+            int s = start[i], e = end[i], k = kind[i];
+            String t = text[i];
+            int j = i - 1;
+            while(j >= 0 && start[j] > s){
+                start[j + 1] = start[j];
+                end[j + 1] = end[j];
+                kind[j + 1] = kind[j];
+                text[j + 1] = text[j];
+                --j;
+            }
+            start[j + 1] = s;
+            end[j + 1] = e;
+            kind[j + 1] = k;
+            text[j + 1] = t;
+        }
+    }
+
+}
@@ -0,0 +1,538 @@
+package be.intimals.htmlviewer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * writer of the generated html files
+ *
+ * pages are encoded in UTF-8 through a direct buffer reused by each thread and written with a file channel.
+ * Pages can be streamed with writePage, so that a page is never held in memory as a whole.
+ * In asynchronous mode the pages are queued and written by a dedicated writer thread,
+ * so that rendering threads don't wait for the disk.
+ * With a pack writer the pages are added to one pack file instead of being written to the directory.
+ */
+public class HtmlOutput implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int PAGE_BUFFER_SIZE = 1 << 12;
+    private static final int QUEUE_SIZE = 1024;
+
+    private static final ThreadLocal<CharsetEncoder> encoders = ThreadLocal.withInitial(() ->
+            StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private final Path dir;
+    private final long startTime = System.nanoTime();
+
+    private final AtomicLong filesWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+
+    //pages waiting for the writer thread, null when pages are written by the calling thread
+    private BlockingQueue<PendingPage> queue;
+    private Thread writerThread;
+    //pack file receiving the pages, null when the pages are written to the directory
+    private PackWriter pack;
+
+    /**
+     * content of a page written to a Writer
+     */
+    public interface PageContent {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    /**
+     * a page queued for the writer thread, or a flush marker when fileName is null
+     */
+    private static class PendingPage {
+        String fileName;
+        String content;
+        CountDownLatch done;
+        //called once the page is written, may be null
+        Runnable written;
+    }
+
+    /**
+     * @param dir : directory receiving the html files
+     * @param async : true to write pages on a dedicated writer thread
+     */
+    public HtmlOutput(String dir, boolean async){
+        this(dir, async, null);
+    }
+
+    /**
+     * @param dir : directory receiving the html files
+     * @param async : true to write pages on a dedicated writer thread
+     * @param pack : pack file receiving the pages instead of the directory, null to write to the directory
+     */
+    public HtmlOutput(String dir, boolean async, PackWriter pack){
+        this.dir = Paths.get(dir);
+        this.pack = pack;
+        if(async){
+            queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+            writerThread = new Thread(this::writeQueuedPages, "html-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * write a page
+     * @param fileName : name of the file in the output directory
+     * @param content : content of the page
+     */
+    public void write(String fileName, CharSequence content){
+        if(queue == null){
+            writeFile(fileName, content);
+        }else{
+            PendingPage page = new PendingPage();
+            page.fileName = fileName;
+            page.content = content.toString();
+            enqueue(page);
+        }
+    }
+
+    /**
+     * stream a page to its file
+     * @param fileName : name of the file in the output directory
+     * @param content : writes the content of the page
+     * @return false if the page could not be rendered or written
+     */
+    public boolean writePage(String fileName, PageContent content){
+        return writePage(fileName, content, null);
+    }
+
+    /**
+     * stream a page to its file and call back once it is written,
+     * in asynchronous mode the page is only queued when this method returns
+     * @param fileName : name of the file in the output directory
+     * @param content : writes the content of the page
+     * @param written : called once the page is written, not called if it fails, may be null
+     * @return false if the page could not be rendered or written
+     */
+    public boolean writePage(String fileName, PageContent content, Runnable written){
+        long start = System.nanoTime();
+        if(queue != null){
+            //the page is buffered and queued for the writer thread
+            StringWriter page = new StringWriter(PAGE_BUFFER_SIZE);
+            try {
+                content.writeTo(page);
+            }catch (IOException | RuntimeException e){
+                failures.incrementAndGet();
+                e.printStackTrace();
+                return false;
+            }finally {
+                Metrics.time("page.render", start);
+            }
+            PendingPage pending = new PendingPage();
+            pending.fileName = fileName;
+            pending.content = page.toString();
+            pending.written = written;
+            enqueue(pending);
+            return true;
+        }
+        ChannelWriter out = null;
+        try {
+            WritableByteChannel channel = openPage(fileName);
+            try (ChannelWriter page = new ChannelWriter(channel)) {
+                out = page;
+                content.writeTo(page);
+                page.finish();
+                commit(channel);
+            }
+            //the bytes are counted once the page is closed
+            filesWritten.incrementAndGet();
+            bytesWritten.addAndGet(out.bytes);
+            if(written != null) written.run();
+            return true;
+        }catch (IOException | RuntimeException e){
+            failures.incrementAndGet();
+            e.printStackTrace();
+            discard(fileName);
+            return false;
+        }finally {
+            //only encoding and writing, like writeFile, not the rendering of the page
+            long nanos = out != null ? out.nanos : 0;
+            writeNanos.addAndGet(nanos);
+            Metrics.record("page.write", nanos);
+            Metrics.record("page.render", System.nanoTime() - start - nanos);
+        }
+    }
+
+    /**
+     * open the channel receiving the bytes of a page: its file, or a buffer added to the pack file when it is closed
+     * @param fileName
+     * @return
+     * @throws IOException
+     */
+    private WritableByteChannel openPage(String fileName) throws IOException {
+        if(pack != null) return new PackedPage(fileName);
+        return FileChannel.open(dir.resolve(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * mark a page as complete, a page of the pack file is only added when it is closed after this call
+     * @param channel : channel opened by openPage
+     */
+    private static void commit(WritableByteChannel channel){
+        if(channel instanceof PackedPage) ((PackedPage) channel).committed = true;
+    }
+
+    /**
+     * delete the partly written file of a page that failed, so that it doesn't look written
+     * @param fileName
+     */
+    private void discard(String fileName){
+        if(pack != null) return;
+        try {
+            Files.deleteIfExists(dir.resolve(fileName));
+        }catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * return true if a page was written
+     * @param fileName
+     * @return
+     */
+    public boolean exists(String fileName){
+        return pack != null ? pack.contains(fileName) : Files.exists(dir.resolve(fileName));
+    }
+
+    /**
+     * bytes of a page added to the pack file when the channel is closed, if the page was committed
+     */
+    private class PackedPage implements WritableByteChannel {
+        private final String fileName;
+        private final PageBytes bytes = new PageBytes();
+        private byte[] chunk;
+        private boolean open = true;
+        private boolean committed;
+
+        PackedPage(String fileName){
+            this.fileName = fileName;
+        }
+
+        @Override
+        public int write(ByteBuffer src){
+            int n = src.remaining();
+            if(src.hasArray()){
+                bytes.write(src.array(), src.arrayOffset() + src.position(), n);
+                src.position(src.limit());
+                return n;
+            }
+            if(chunk == null) chunk = new byte[PAGE_BUFFER_SIZE];
+            while(src.hasRemaining()){
+                int length = Math.min(chunk.length, src.remaining());
+                src.get(chunk, 0, length);
+                bytes.write(chunk, 0, length);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen(){return open;}
+
+        @Override
+        public void close() throws IOException {
+            if(!open) return;
+            open = false;
+            //a page that failed while it was written is not added
+            if(committed) pack.add(fileName, bytes.buffer(), bytes.size());
+        }
+    }
+
+    /**
+     * byte array output stream giving access to its buffer without copying it
+     */
+    private static class PageBytes extends ByteArrayOutputStream {
+        PageBytes(){
+            super(PAGE_BUFFER_SIZE);
+        }
+
+        byte[] buffer(){return buf;}
+    }
+
+    /**
+     * writer encoding its characters in UTF-8 to a file channel through a small character buffer
+     */
+    private static class ChannelWriter extends Writer {
+        private final WritableByteChannel channel;
+        private final char[] chars = new char[PAGE_BUFFER_SIZE];
+        private int nbChars;
+        private long bytes;
+        //time spent encoding and writing
+        private long nanos;
+        private boolean closed;
+
+        ChannelWriter(WritableByteChannel channel){
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if(nbChars == chars.length) flushChars(false);
+            chars[nbChars++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            while(len > 0){
+                if(nbChars == chars.length) flushChars(false);
+                int n = Math.min(len, chars.length - nbChars);
+                System.arraycopy(cbuf, off, chars, nbChars, n);
+                nbChars += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            while(len > 0){
+                if(nbChars == chars.length) flushChars(false);
+                int n = Math.min(len, chars.length - nbChars);
+                str.getChars(off, off + n, chars, nbChars);
+                nbChars += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public Writer append(CharSequence csq) throws IOException {
+            if(csq instanceof String){
+                write((String) csq, 0, csq.length());
+            }else if(csq instanceof StringBuilder){
+                //copy the builder without creating a string
+                StringBuilder sb = (StringBuilder) csq;
+                int off = 0;
+                while(off < sb.length()){
+                    if(nbChars == chars.length) flushChars(false);
+                    int n = Math.min(sb.length() - off, chars.length - nbChars);
+                    sb.getChars(off, off + n, chars, nbChars);
+                    nbChars += n;
+                    off += n;
+                }
+            }else{
+                String str = String.valueOf(csq);
+                write(str, 0, str.length());
+            }
+            return this;
+        }
+
+        /**
+         * encode the buffered characters with the encoder and byte buffer of the current thread
+         * @param all : true to encode a trailing high surrogate too
+         */
+        private void flushChars(boolean all) throws IOException {
+            long start = System.nanoTime();
+            try {
+                encodeChars(all);
+            }finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        private void encodeChars(boolean all) throws IOException {
+            //keep a high surrogate with its low surrogate, each chunk is encoded on its own
+            int n = nbChars;
+            if(!all && n > 0 && Character.isHighSurrogate(chars[n - 1])) --n;
+            CharsetEncoder encoder = encoders.get().reset();
+            ByteBuffer buffer = buffers.get();
+            buffer.clear();
+            CharBuffer input = CharBuffer.wrap(chars, 0, n);
+            CoderResult result;
+            do {
+                result = encoder.encode(input, buffer, true);
+                bytes += drain(buffer, channel);
+            } while (result.isOverflow());
+            do {
+                result = encoder.flush(buffer);
+                bytes += drain(buffer, channel);
+            } while (result.isOverflow());
+            System.arraycopy(chars, n, chars, 0, nbChars - n);
+            nbChars -= n;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushChars(false);
+        }
+
+        /**
+         * encode the last buffered characters, the page is complete
+         * @throws IOException
+         */
+        void finish() throws IOException {
+            flushChars(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(closed) return;
+            closed = true;
+            try {
+                flushChars(true);
+            }finally {
+                long start = System.nanoTime();
+                channel.close();
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * wait until all queued pages are written
+     */
+    public void flush(){
+        if(queue == null) return;
+        PendingPage marker = new PendingPage();
+        marker.done = new CountDownLatch(1);
+        enqueue(marker);
+        try {
+            marker.done.await();
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * write the queued pages, stop the writer thread and write the index of the pack file
+     */
+    @Override
+    public void close(){
+        flush();
+        if(writerThread != null){
+            writerThread.interrupt();
+            writerThread = null;
+        }
+        if(pack != null){
+            try {
+                pack.close();
+            }catch (IOException e){
+                failures.incrementAndGet();
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void enqueue(PendingPage page){
+        try {
+            queue.put(page);
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeQueuedPages(){
+        try {
+            while (true) {
+                PendingPage page = queue.take();
+                try {
+                    if (page.fileName != null && writeFile(page.fileName, page.content) && page.written != null) page.written.run();
+                }catch (RuntimeException e){
+                    //a page that can't be written doesn't stop the writer thread, flush would wait forever
+                    failures.incrementAndGet();
+                    e.printStackTrace();
+                }finally {
+                    if (page.done != null) page.done.countDown();
+                }
+            }
+        }catch (InterruptedException e){
+            //output closed
+        }
+    }
+
+    /**
+     * encode a page in UTF-8 and write it to its file
+     * @param fileName
+     * @param content
+     * @return true if the page was written
+     */
+    private boolean writeFile(String fileName, CharSequence content){
+        long start = System.nanoTime();
+        CharsetEncoder encoder = encoders.get().reset();
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        CharBuffer chars = CharBuffer.wrap(content);
+        long bytes = 0;
+        try (WritableByteChannel channel = openPage(fileName)) {
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, buffer, true);
+                bytes += drain(buffer, channel);
+            } while (result.isOverflow());
+            do {
+                result = encoder.flush(buffer);
+                bytes += drain(buffer, channel);
+            } while (result.isOverflow());
+            commit(channel);
+            filesWritten.incrementAndGet();
+            bytesWritten.addAndGet(bytes);
+            return true;
+        }catch (IOException | RuntimeException e){
+            failures.incrementAndGet();
+            e.printStackTrace();
+            discard(fileName);
+            return false;
+        }finally {
+            writeNanos.addAndGet(System.nanoTime() - start);
+            Metrics.time("page.write", start);
+        }
+    }
+
+    private static int drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        int bytes = buffer.remaining();
+        while(buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+        return bytes;
+    }
+
+    public long getFilesWritten(){return filesWritten.get();}
+
+    public long getBytesWritten(){return bytesWritten.get();}
+
+    public long getFailures(){return failures.get();}
+
+    /**
+     * return a one-line summary of the files written
+     * @return
+     */
+    public String report(){
+        double seconds = Math.max(1e-9, (System.nanoTime() - startTime) / 1e9);
+        double writeSeconds = writeNanos.get() / 1e9;
+        long files = filesWritten.get();
+        long bytes = bytesWritten.get();
+        String report = String.format("html output: %d files, %.1f MB, %d failures, %.0f files/s, %.1f MB/s, %.2f s spent writing",
+                files, bytes / 1e6, failures.get(), files / seconds, bytes / 1e6 / seconds, writeSeconds);
+        if(pack != null) report += ", packed in " + pack.getFile() + " (" + pack.getFile().length() / 1000 + " KB)";
+        return report;
+    }
+
+}
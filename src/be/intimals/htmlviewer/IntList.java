@@ -0,0 +1,41 @@
+package be.intimals.htmlviewer;
+
+import java.util.Arrays;
+
+/**
+ * growable list of primitive ints
+ */
+public class IntList {
+
+    private int[] values;
+    private int size;
+
+    public IntList(){
+        this(16);
+    }
+
+    public IntList(int capacity){
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int value){
+        if(size == values.length) values = Arrays.copyOf(values, 2 * size);
+        values[size++] = value;
+    }
+
+    public int get(int i){
+        if(i >= size) throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        return values[i];
+    }
+
+    public int size(){return size;}
+
+    /**
+     * return a copy of the values
+     * @return
+     */
+    public int[] toArray(){
+        return Arrays.copyOf(values, size);
+    }
+
+}
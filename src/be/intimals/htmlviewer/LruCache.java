@@ -0,0 +1,145 @@
+package be.intimals.htmlviewer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * least recently used cache bounded by the total weight of its values
+ *
+ * the weight of a value is an estimation of its size in bytes,
+ * the least recently used values are evicted as soon as the budget is exceeded
+ * @param <K> : key
+ * @param <V> : value
+ */
+public class LruCache<K, V> {
+
+    private final String name;
+    private final long budget;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+    //keys being loaded
+    private final Map<K, FutureTask<V>> loading = new HashMap<>();
+
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param name : name used in the report
+     * @param budget : maximum total weight of the cached values
+     * @param weigher : weight of a value
+     */
+    public LruCache(String name, long budget, ToLongFunction<V> weigher){
+        this.name = name;
+        this.budget = budget;
+        this.weigher = weigher;
+    }
+
+    /**
+     * return the value of a key, load and cache it if it is not in the cache
+     *
+     * a key is loaded by one thread at a time, other threads asking for it wait for its value
+     * @param key
+     * @param loader : function computing the value of a missing key
+     * @return
+     */
+    public V get(K key, Function<K, V> loader){
+        FutureTask<V> load;
+        boolean isLoader = false;
+        synchronized (this) {
+            V value = map.get(key);
+            if (value != null) {
+                ++hits;
+                return value;
+            }
+            load = loading.get(key);
+            if (load == null) {
+                ++misses;
+                load = new FutureTask<>(() -> loader.apply(key));
+                loading.put(key, load);
+                isLoader = true;
+            } else {
+                ++hits;
+            }
+        }
+        if(isLoader){
+            //load outside the lock so that other keys can be served meanwhile
+            load.run();
+        }
+        try {
+            V value = load.get();
+            if(isLoader && value != null) put(key, value);
+            return value;
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }catch (ExecutionException e){
+            throw new RuntimeException(e.getCause());
+        }finally {
+            if(isLoader){
+                synchronized (this) {
+                    loading.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * return the cached value of a key or null
+     * @param key
+     * @return
+     */
+    public synchronized V getIfPresent(K key){
+        V value = map.get(key);
+        if(value != null) ++hits; else ++misses;
+        return value;
+    }
+
+    /**
+     * add a value and evict the least recently used values exceeding the budget
+     * @param key
+     * @param value
+     */
+    public synchronized void put(K key, V value){
+        long valueWeight = weigher.applyAsLong(value);
+        //a value larger than the budget is never cached
+        if(valueWeight > budget) return;
+        V old = map.put(key, value);
+        if(old != null) weight -= weigher.applyAsLong(old);
+        weight += valueWeight;
+        Iterator<Map.Entry<K, V>> eldest = map.entrySet().iterator();
+        while(weight > budget && eldest.hasNext()){
+            Map.Entry<K, V> entry = eldest.next();
+            weight -= weigher.applyAsLong(entry.getValue());
+            eldest.remove();
+            ++evictions;
+        }
+    }
+
+    public synchronized long getHits(){return hits;}
+
+    public synchronized long getMisses(){return misses;}
+
+    public synchronized long getEvictions(){return evictions;}
+
+    public synchronized long getWeight(){return weight;}
+
+    public synchronized int size(){return map.size();}
+
+    /**
+     * return a one-line summary of the cache usage
+     * @return
+     */
+    public synchronized String report(){
+        return name + ": " + hits + " hits, " + misses + " misses, " + evictions + " evictions, " +
+                map.size() + " entries, " + (weight >> 10) + " KB / " + (budget >> 10) + " KB";
+    }
+
+}
@@ -0,0 +1,65 @@
+package be.intimals.htmlviewer;
+
+import java.util.Arrays;
+
+/**
+ * index of matches grouped by pattern ID
+ *
+ * the offsets of the matches of pattern p (positions in the list of all matches)
+ * are stored in matchOffsets[start[p] .. start[p+1]), in their original order
+ */
+public class MatchIndex {
+
+    private int[] start;
+    private int[] matchOffsets;
+
+    private MatchIndex(int[] start, int[] matchOffsets){
+        this.start = start;
+        this.matchOffsets = matchOffsets;
+    }
+
+    /**
+     * build the index from the pattern ID of every match
+     * @param patternIDs : pattern ID of match i at position i, negative IDs are ignored
+     * @param maxPatternID : largest pattern ID
+     * @return
+     */
+    public static MatchIndex build(int[] patternIDs, int maxPatternID){
+        //count matches of each pattern
+        int[] start = new int[maxPatternID + 2];
+        for(int patternID : patternIDs){
+            if(patternID >= 0) ++start[patternID + 1];
+        }
+        for(int p = 1; p < start.length; ++p){
+            start[p] += start[p - 1];
+        }
+        //fill offsets, keeping the order of the matches file
+        int[] next = Arrays.copyOf(start, start.length - 1);
+        int[] matchOffsets = new int[start[start.length - 1]];
+        for(int i = 0; i < patternIDs.length; ++i){
+            if(patternIDs[i] >= 0) matchOffsets[next[patternIDs[i]]++] = i;
+        }
+        return new MatchIndex(start, matchOffsets);
+    }
+
+    /**
+     * return number of matches of a pattern
+     * @param patternID
+     * @return
+     */
+    public int countMatches(int patternID){
+        if(patternID < 0 || patternID + 1 >= start.length) return 0;
+        return start[patternID + 1] - start[patternID];
+    }
+
+    /**
+     * return offset of the k^th match (0-based) of a pattern in the list of all matches
+     * @param patternID
+     * @param k
+     * @return
+     */
+    public int getMatch(int patternID, int k){
+        return matchOffsets[start[patternID] + k];
+    }
+
+}
@@ -0,0 +1,294 @@
+package be.intimals.htmlviewer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+import static be.intimals.htmlviewer.Utils.*;
+import static be.intimals.htmlviewer.Variables.*;
+
+/**
+ * highlight the lines of a match in its Python file
+ *
+ * a renderer holds the state of one match, so that matches can be rendered in parallel
+ */
+public class MatchRenderer {
+
+    //how a matched line is marked
+    private static final int COMMENT_LINE = 0;   //the whole line is a comment
+    private static final int KEYWORD_LINE = 1;   //the whole line is a keyword, e.g. try
+    private static final int MARKED_LINE = 2;    //variables and keywords of the line are marked
+
+    //marked spans of a match, sorted by line
+    private MatchSpans spans;
+    //store node IDs of a match in XML file, sorted without duplicates
+    private int[] nodeIdOfMatch;
+    //python source code
+    private SourceText pythonSource;
+
+    /**
+     * find lines and variable names of a match to add color markers
+     * @param sourceFile : Python file and index of its XML file
+     * @param nodeIDs   : IDs of the AST nodes of one match
+     */
+    public MatchRenderer(SourceFile sourceFile, int[] nodeIDs){
+        long start = System.nanoTime();
+        //store lines and variable names
+        spans = new MatchSpans();
+        //store match node ids of a match
+        nodeIdOfMatch = getNodeIdOfMatch(nodeIDs);
+        pythonSource = sourceFile.getLines();
+        SourceIndex sourceIndex = sourceFile.getIndex();
+        //find line number of node IDs in XML file
+        for(int id : nodeIdOfMatch){
+            //find line and col number of this id in the XML doc
+            findLineAndCol(id, sourceIndex);
+        }
+        spans.seal();
+        Metrics.time("match.lines", start);
+    }
+
+    /**
+     * find all IDs of AST nodes in a match
+     * @param nodeIDs : node IDs of a match
+     * @return sorted IDs without duplicates, searched by binary search
+     */
+    private static int[] getNodeIdOfMatch(int[] nodeIDs){
+        nodeIDs = nodeIDs.clone();
+        Arrays.sort(nodeIDs);
+        int size = 0;
+        for(int i = 0; i < nodeIDs.length; ++i){
+            if(size == 0 || nodeIDs[i] != nodeIDs[size - 1]) nodeIDs[size++] = nodeIDs[i];
+        }
+        return size == nodeIDs.length ? nodeIDs : Arrays.copyOf(nodeIDs, size);
+    }
+
+
+    /**
+     * find all line and column number of an match id in a XML file
+     * @param matchID    : match ID of an XML node
+     * @param sourceIndex : index of the AST nodes of the XML file
+     */
+    private void findLineAndCol(int matchID, SourceIndex sourceIndex){
+        try {
+            if(!sourceIndex.hasPosition(matchID)) return;
+            int nodeLineNr = sourceIndex.getLineNr(matchID);
+            int nodeEndLineNr = sourceIndex.getEndLineNr(matchID);
+            int nodeColNr = sourceIndex.getColNr(matchID);
+            int nodeEndColNr = sourceIndex.getEndColNr(matchID);
+            boolean isLeaf = sourceIndex.isLeaf(matchID);
+
+            boolean isMultipleLines = nodeEndLineNr > nodeLineNr;
+            if(isLeaf){
+                if(isMultipleLines){
+                    // matched variable has multiple lines, e.g, comments
+                    addMultipleLineID(nodeLineNr, nodeEndLineNr);
+                }else if(nodeLineNr >= 1 && nodeLineNr <= pythonSource.size()){
+                    // add matched variable in single line
+                    spans.add(nodeLineNr, nodeColNr - 1, nodeEndColNr, MatchSpans.VARIABLE, sourceIndex.getText(matchID));
+                }
+                return;
+            }
+            //intermediate node, keywords like ClassDef, FunctionDef, If,
+            if(isDummyMatch(matchID, sourceIndex) && !sourceIndex.getDummyVariable(matchID).isEmpty()){
+                if(isMultipleLines){
+                    // dummy variable is in multiple lines, e.g, comments
+                    addMultipleLineID(nodeLineNr, nodeEndLineNr);
+                }else if(nodeLineNr >= 1 && nodeLineNr <= pythonSource.size()){
+                    spans.add(nodeLineNr, nodeColNr - 1, nodeEndColNr, MatchSpans.DUMMY, sourceIndex.getDummyVariable(matchID));
+                }
+            }else if(exceptionKeywords.contains(sourceIndex.getNodeName(matchID))){
+                // Try, ExceptHandler, ExceptHandler
+                spans.addLine(nodeLineNr, MatchSpans.LINE_KEYWORDS);
+            }
+            //other nodes don't have variable name or dummy name, e.g, Module, Func, ...
+        }catch (Exception e){
+            e.printStackTrace();
+        }
+    }
+
+    private void addMultipleLineID(int nodeLineNr, int nodeEndLineNr) {
+        for (int i = nodeLineNr; i <= nodeEndLineNr; ++i) {
+            //the whole line is marked as a comment
+            spans.addLine(i, MatchSpans.LINE_COMMENT);
+        }
+    }
+
+    /**
+     * return true if the matchID is a dummy match
+     * @param matchID : match ID
+     * @param sourceIndex : index of the AST nodes of the XML file
+     * @return
+     */
+    private boolean isDummyMatch(int matchID, SourceIndex sourceIndex){
+        for(int k = 0; k < sourceIndex.countChildren(matchID); ++k){
+            int childID = sourceIndex.getChild(matchID, k);
+            //a child without ID can't be compared
+            if(childID < 0) return false;
+            //if the ID of this child node is not in the nodeIdOfMatch then this node is a dummy node
+            if(Arrays.binarySearch(nodeIdOfMatch, childID) < 0) return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * add makers to Python file
+     * @param out : receives the marked lines
+     * @throws IOException
+     */
+    public void addMarkers(Appendable out) throws IOException {
+        addMarkers(out, -1);
+    }
+
+    /**
+     * add makers to the matched lines of the Python file and to the lines around them,
+     * the other lines are replaced by a gap marker
+     * @param out : receives the marked lines
+     * @param context : number of lines shown before and after each matched line, -1 for all lines
+     * @throws IOException
+     */
+    public void addMarkers(Appendable out, int context) throws IOException {
+        long start = System.nanoTime();
+        try {
+            writeLines(out, context);
+        }finally {
+            Metrics.time("match.markers", start);
+        }
+    }
+
+    private void writeLines(Appendable out, int context) throws IOException {
+        //marked line, reused for all lines
+        StringBuilder sb = new StringBuilder();
+        Highlighter highlighter = new Highlighter();
+        if(context < 0){
+            for(int i = 0; i<pythonSource.size(); ++i){
+                writeLine(out, i, highlighter, sb);
+            }
+            return;
+        }
+        //last line written or skipped
+        int shown = 0;
+        for(int span = 0; span < spans.size(); span = spans.firstSpan(spans.getLine(span) + 1)){
+            int lineNr = spans.getLine(span);
+            if(lineNr < 1 || lineNr > pythonSource.size()) continue;
+            int from = Math.max(shown + 1, lineNr - context);
+            int to = Math.min(pythonSource.size(), lineNr + context);
+            if(from > to) continue;
+            if(from > shown + 1) writeGap(out, from - shown - 1);
+            for(int i = from - 1; i < to; ++i){
+                writeLine(out, i, highlighter, sb);
+            }
+            shown = to;
+        }
+        if(shown < pythonSource.size()) writeGap(out, pythonSource.size() - shown);
+    }
+
+    private static void writeGap(Appendable out, int nbLines) throws IOException {
+        out.append("<pre class=\"gap\">... ").append(String.valueOf(nbLines)).append(nbLines == 1 ? " line" : " lines").append(" ...</pre>\n");
+    }
+
+    /**
+     * write a line of the Python file, with its markers if it is matched
+     * @param out
+     * @param i : index of the line, starting at 0
+     * @param highlighter : reused for all lines
+     * @param sb : reused for all lines
+     * @throws IOException
+     */
+    private void writeLine(Appendable out, int i, Highlighter highlighter, StringBuilder sb) throws IOException {
+        sb.setLength(0);
+        try {
+            String line = pythonSource.get(i);
+            int first = spans.firstSpan(i+1);
+            if(first < spans.size() && spans.getLine(first) == i+1){
+                int mode = prepareLine(highlighter, line, first);
+                if(mode == COMMENT_LINE){
+                    sb.append("<pre><mark>").append(i+1).append(" <"+COMMENT+">").append(line).append("</"+COMMENT+"></mark></pre>");
+                }else{
+                    //add marker to highlight entire line
+                    sb.append("<pre><mark>").append(i+1).append(' ');
+                    if(mode == KEYWORD_LINE){
+                        //add color marker to the whole line and to its keywords
+                        sb.append("<"+KEYCOLOR+">");
+                        highlighter.render(line, sb);
+                        sb.append("</"+KEYCOLOR+">");
+                    }else{
+                        highlighter.render(line, sb);
+                    }
+                    sb.append("</mark></pre>");
+                }
+            }else{
+                sb.append("<pre>").append(i+1).append(' ').append(line).append("</pre>\n");
+            }
+        }catch (RuntimeException e){
+            e.printStackTrace();
+        }
+        out.append(sb);
+    }
+
+    /**
+     * find how a matched line is marked and add its spans to the highlighter
+     * @param highlighter : receives the spans of the line
+     * @param line : matched line
+     * @param first : first span of the line
+     * @return COMMENT_LINE, KEYWORD_LINE or MARKED_LINE
+     */
+    private int prepareLine(Highlighter highlighter, String line, int first){
+        highlighter.clear();
+        int lineNr = spans.getLine(first);
+        int end = first;
+        boolean keywordLine = false;
+        for(; end < spans.size() && spans.getLine(end) == lineNr; ++end){
+            // if this line is marked as a comment, the whole line is a comment
+            if(spans.getKind(end) == MatchSpans.LINE_COMMENT) return COMMENT_LINE;
+            if(spans.getKind(end) == MatchSpans.LINE_KEYWORDS) keywordLine = true;
+        }
+        if(keywordLine){
+            highlighter.addKeywords(line, keywords);
+            return KEYWORD_LINE;
+        }
+        //add color marker to variable names, then to keywords
+        for(int span = first; span < end; ++span){
+            highlighter.add(spans.getStartCol(span), spans.getEndCol(span), spans.getKind(span), spans.getText(span));
+        }
+        highlighter.addKeywords(line, keywords);
+        return MARKED_LINE;
+    }
+
+    /**
+     * write the matched lines as a JSON array of [line number, mode, spans],
+     * each span being [first column, column after the last one, kind, text or null]
+     * @param out
+     * @throws IOException
+     */
+    public void writeMarks(Writer out) throws IOException {
+        long start = System.nanoTime();
+        Highlighter highlighter = new Highlighter();
+        out.write('[');
+        boolean firstLine = true;
+        for(int span = 0; span < spans.size(); span = spans.firstSpan(spans.getLine(span) + 1)){
+            int lineNr = spans.getLine(span);
+            if(lineNr < 1 || lineNr > pythonSource.size()) continue;
+            String line = pythonSource.get(lineNr - 1);
+            int mode = prepareLine(highlighter, line, span);
+            if(!firstLine) out.write(',');
+            firstLine = false;
+            out.write("[" + lineNr + "," + mode + ",[");
+            boolean[] firstSpan = {true};
+            if(mode != COMMENT_LINE){
+                highlighter.visit(line, (from, to, kind, text) -> {
+                    if(!firstSpan[0]) out.write(',');
+                    firstSpan[0] = false;
+                    out.write("[" + from + "," + to + "," + kind + ",");
+                    DataRenderer.writeString(out, text);
+                    out.write(']');
+                });
+            }
+            out.write("]]");
+        }
+        out.write(']');
+        Metrics.time("match.markers", start);
+    }
+
+}
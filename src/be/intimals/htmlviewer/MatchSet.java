@@ -0,0 +1,100 @@
+package be.intimals.htmlviewer;
+
+import java.util.Arrays;
+
+/**
+ * matches of one class read from a matches file, grouped by pattern ID
+ *
+ * match i has pattern patternIDs[i], source file fileNames[fileIndex[i]]
+ * and AST nodes nodeIDs[nodeStart[i] .. nodeStart[i+1])
+ */
+public class MatchSet {
+
+    //class label used in page names: "_", "old" or "new"
+    private String label;
+    //directory containing the source files of the matches
+    private String sourceDir;
+
+    private int[] patternIDs;
+    private int[] fileIndex;
+    private String[] fileNames;
+    private int[] nodeStart;
+    private int[] nodeIDs;
+    private MatchIndex matchIndex;
+
+    public MatchSet(String label, String sourceDir, int[] patternIDs, int[] fileIndex, String[] fileNames,
+                    int[] nodeStart, int[] nodeIDs){
+        this.label = label;
+        this.sourceDir = sourceDir;
+        this.patternIDs = patternIDs;
+        this.fileIndex = fileIndex;
+        this.fileNames = fileNames;
+        this.nodeStart = nodeStart;
+        this.nodeIDs = nodeIDs;
+        int maxPatternID = 0;
+        for(int patternID : patternIDs){
+            maxPatternID = Math.max(maxPatternID, patternID);
+        }
+        this.matchIndex = MatchIndex.build(patternIDs, maxPatternID);
+    }
+
+    public String getLabel(){return label;}
+
+    public String getSourceDir(){return sourceDir;}
+
+    //arrays of the set, stored as they are in a result snapshot
+
+    int[] getPatternIDs(){return patternIDs;}
+
+    int[] getFileIndex(){return fileIndex;}
+
+    String[] getFileNames(){return fileNames;}
+
+    int[] getNodeStart(){return nodeStart;}
+
+    int[] getAllNodeIDs(){return nodeIDs;}
+
+    /**
+     * return number of matches in this set
+     * @return
+     */
+    public int size(){return patternIDs.length;}
+
+    /**
+     * return number of matches of a pattern
+     * @param patternID
+     * @return
+     */
+    public int countMatches(int patternID){
+        return matchIndex.countMatches(patternID);
+    }
+
+    /**
+     * return the k^th match (0-based) of a pattern
+     * @param patternID
+     * @param k
+     * @return index of the match in this set
+     */
+    public int getMatch(int patternID, int k){
+        return matchIndex.getMatch(patternID, k);
+    }
+
+    /**
+     * return full name of the source file of a match
+     * @param match : index of the match
+     * @return
+     */
+    public String getFullName(int match){
+        return fileNames[fileIndex[match]];
+    }
+
+    /**
+     * return IDs of the AST nodes of a match
+     * @param match : index of the match
+     * @return
+     */
+    public int[] getNodeIDs(int match){
+        return Arrays.copyOfRange(nodeIDs, nodeStart[match], nodeStart[match + 1]);
+    }
+
+}
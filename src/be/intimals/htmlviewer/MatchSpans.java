@@ -0,0 +1,158 @@
+package be.intimals.htmlviewer;
+
+import java.util.Arrays;
+
+/**
+ * marks of a match in its Python file, sorted by line
+ *
+ * span i marks columns [startCol[i], endCol[i]) of line line[i] with a variable or a dummy variable,
+ * or marks the whole line as a comment or as a keyword line, e.g. try.
+ * Spans are added while the nodes of the match are read, then sorted once by seal
+ * and read by line without parsing.
+ */
+public class MatchSpans {
+
+    //kinds of spans, VARIABLE and DUMMY are also kinds of spans of the Highlighter
+    public static final int VARIABLE = Highlighter.VARIABLE;
+    public static final int DUMMY = Highlighter.DUMMY;
+    public static final int LINE_COMMENT = 3;   //the whole line is a comment
+    public static final int LINE_KEYWORDS = 4;  //the whole line and its keywords are marked, e.g. try
+
+    private int[] line = new int[16];
+    private int[] startCol = new int[16];
+    private int[] endCol = new int[16];
+    private int[] kind = new int[16];
+    //name of a variable, written instead of the characters of its span, null for a line span
+    private String[] text = new String[16];
+    private int size;
+
+    /**
+     * add a variable or a dummy variable
+     * @param lineNr : line number, starting at 1
+     * @param from : first column, 0-based
+     * @param to : column after the last one
+     * @param spanKind : VARIABLE or DUMMY
+     * @param name : name of the variable
+     */
+    public void add(int lineNr, int from, int to, int spanKind, String name){
+        if(size == line.length){
+            line = Arrays.copyOf(line, 2 * size);
+            startCol = Arrays.copyOf(startCol, 2 * size);
+            endCol = Arrays.copyOf(endCol, 2 * size);
+            kind = Arrays.copyOf(kind, 2 * size);
+            text = Arrays.copyOf(text, 2 * size);
+        }
+        line[size] = lineNr;
+        startCol[size] = from;
+        endCol[size] = to;
+        kind[size] = spanKind;
+        text[size] = name;
+        ++size;
+    }
+
+    /**
+     * mark a whole line
+     * @param lineNr : line number, starting at 1
+     * @param spanKind : LINE_COMMENT or LINE_KEYWORDS
+     */
+    public void addLine(int lineNr, int spanKind){
+        add(lineNr, 0, 0, spanKind, null);
+    }
+
+    /**
+     * sort the spans by line, then by first column, and remove the duplicated spans,
+     * of two spans starting at the same column the longer one comes first, so that an enclosing node is kept
+     */
+    public void seal(){
+        int[] order = new int[size];
+        for(int i = 0; i < size; ++i) order[i] = i;
+        sort(order, new int[size], 0, size);
+        int[] sortedLine = new int[size], sortedStart = new int[size], sortedEnd = new int[size], sortedKind = new int[size];
+        String[] sortedText = new String[size];
+        int kept = 0;
+        for(int k = 0; k < size; ++k){
+            int i = order[k];
+            if(kept > 0 && compare(i, order[k - 1]) == 0) continue;
+            sortedLine[kept] = line[i];
+            sortedStart[kept] = startCol[i];
+            sortedEnd[kept] = endCol[i];
+            sortedKind[kept] = kind[i];
+            sortedText[kept] = text[i];
+            ++kept;
+        }
+        line = sortedLine;
+        startCol = sortedStart;
+        endCol = sortedEnd;
+        kind = sortedKind;
+        text = sortedText;
+        size = kept;
+    }
+
+    /**
+     * stable merge sort of span indexes, without boxing them
+     * @param order : span indexes, sorted from from to to
+     * @param tmp : buffer as long as order
+     * @param from
+     * @param to
+     */
+    private void sort(int[] order, int[] tmp, int from, int to){
+        if(to - from < 16){
+            //insertion sort of a short range
+            for(int k = from + 1; k < to; ++k){
+                int i = order[k];
+                int l = k;
+                for(; l > from && compare(order[l - 1], i) > 0; --l) order[l] = order[l - 1];
+                order[l] = i;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(order, tmp, from, middle);
+        sort(order, tmp, middle, to);
+        //the spans of a match are mostly added in order
+        if(compare(order[middle - 1], order[middle]) <= 0) return;
+        System.arraycopy(order, from, tmp, from, to - from);
+        int left = from, right = middle;
+        for(int k = from; k < to; ++k){
+            if(right >= to || (left < middle && compare(tmp[left], tmp[right]) <= 0)) order[k] = tmp[left++];
+            else order[k] = tmp[right++];
+        }
+    }
+
+    private int compare(int i, int j){
+        if(line[i] != line[j]) return Integer.compare(line[i], line[j]);
+        if(startCol[i] != startCol[j]) return Integer.compare(startCol[i], startCol[j]);
+        if(endCol[i] != endCol[j]) return Integer.compare(endCol[j], endCol[i]);
+        if(kind[i] != kind[j]) return Integer.compare(kind[i], kind[j]);
+        if(text[i] == null || text[j] == null) return text[i] == null ? (text[j] == null ? 0 : -1) : 1;
+        return text[i].compareTo(text[j]);
+    }
+
+    /**
+     * return the first span of a line or of the next marked line, size() if there is none
+     * @param lineNr : line number, starting at 1
+     * @return
+     */
+    public int firstSpan(int lineNr){
+        int low = 0, high = size;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(line[middle] < lineNr) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    public int size(){return size;}
+
+    public int getLine(int span){return line[span];}
+
+    public int getStartCol(int span){return startCol[span];}
+
+    public int getEndCol(int span){return endCol[span];}
+
+    public int getKind(int span){return kind[span];}
+
+    public String getText(int span){return text[span];}
+
+}
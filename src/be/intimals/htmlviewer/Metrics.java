@@ -0,0 +1,250 @@
+package be.intimals.htmlviewer;
+
+import javax.management.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * timers and counters of the phases of a run, shared by all threads
+ *
+ * a timer sums the durations of a phase and counts its calls, e.g. config.load or match.markers,
+ * a counter is a number of events or bytes, e.g. output.bytes.
+ * The numbers are written to a JSON and a CSV report at the end of a run,
+ * and can be read through JMX while the viewer runs.
+ */
+public class Metrics {
+
+    //name of the MBean of the metrics
+    public static final String MBEAN_NAME = "be.intimals.htmlviewer:type=Metrics";
+
+    private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final Map<String, AtomicLong> counters = new ConcurrentSkipListMap<>();
+
+    private static class Timer {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void add(long duration){
+            count.incrementAndGet();
+            nanos.addAndGet(duration);
+            maxNanos.accumulateAndGet(duration, Math::max);
+        }
+    }
+
+    /**
+     * add the duration of a call to the timer of a phase
+     * @param name : name of the phase
+     * @param start : System.nanoTime() at the start of the call
+     */
+    public static void time(String name, long start){
+        record(name, System.nanoTime() - start);
+    }
+
+    /**
+     * add a duration measured by the caller to the timer of a phase
+     * @param name : name of the phase
+     * @param nanos : duration in nanoseconds
+     */
+    public static void record(String name, long nanos){
+        timers.computeIfAbsent(name, n -> new Timer()).add(nanos);
+    }
+
+    /**
+     * add a value to a counter
+     * @param name
+     * @param value
+     */
+    public static void add(String name, long value){
+        counters.computeIfAbsent(name, n -> new AtomicLong()).addAndGet(value);
+    }
+
+    public static void count(String name){add(name, 1);}
+
+    /**
+     * set the value of a counter, for numbers counted by another object, e.g. the hits of a cache
+     * @param name
+     * @param value
+     */
+    public static void set(String name, long value){
+        counters.computeIfAbsent(name, n -> new AtomicLong()).set(value);
+    }
+
+    /**
+     * set the counters of a cache
+     * @param name : prefix of the counters
+     * @param cache
+     */
+    public static void setCache(String name, LruCache<?, ?> cache){
+        set(name + ".hits", cache.getHits());
+        set(name + ".misses", cache.getMisses());
+        set(name + ".evictions", cache.getEvictions());
+        set(name + ".bytes", cache.getWeight());
+    }
+
+    /**
+     * remove all timers and counters, at the start of a run
+     */
+    public static void reset(){
+        timers.clear();
+        counters.clear();
+    }
+
+    /**
+     * write the report as JSON: {"timers":{name:{"count":..,"totalMs":..,"maxMs":..}},"counters":{name:value}}
+     * @param file
+     * @throws IOException
+     */
+    public static void writeJson(File file) throws IOException {
+        try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))){
+            out.write("{\"timers\":{");
+            boolean first = true;
+            for(Map.Entry<String, Timer> timer : timers.entrySet()){
+                if(!first) out.write(',');
+                first = false;
+                out.write("\n  ");
+                DataRenderer.writeString(out, timer.getKey());
+                Timer value = timer.getValue();
+                out.write(":{\"count\":" + value.count.get() + ",\"totalMs\":" + millis(value.nanos.get()) +
+                        ",\"maxMs\":" + millis(value.maxNanos.get()) + "}");
+            }
+            out.write("},\n\"counters\":{");
+            first = true;
+            for(Map.Entry<String, AtomicLong> counter : counters.entrySet()){
+                if(!first) out.write(',');
+                first = false;
+                out.write("\n  ");
+                DataRenderer.writeString(out, counter.getKey());
+                out.write(":" + counter.getValue().get());
+            }
+            out.write("}}\n");
+        }
+    }
+
+    /**
+     * write the report as CSV, one line per timer or counter: name,kind,count,total_ms,max_ms,value
+     * @param file
+     * @throws IOException
+     */
+    public static void writeCsv(File file) throws IOException {
+        try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))){
+            out.write("name,kind,count,total_ms,max_ms,value\n");
+            for(Map.Entry<String, Timer> timer : timers.entrySet()){
+                Timer value = timer.getValue();
+                out.write(timer.getKey() + ",timer," + value.count.get() + "," + millis(value.nanos.get()) + "," +
+                        millis(value.maxNanos.get()) + ",\n");
+            }
+            for(Map.Entry<String, AtomicLong> counter : counters.entrySet()){
+                out.write(counter.getKey() + ",counter,,,," + counter.getValue().get() + "\n");
+            }
+        }
+    }
+
+    /**
+     * write metrics.json and metrics.csv to a directory
+     * @param dir
+     * @return a one-line summary of the report
+     */
+    public static String writeReports(File dir){
+        File json = new File(dir, "metrics.json");
+        try {
+            writeJson(json);
+            writeCsv(new File(dir, "metrics.csv"));
+        }catch (IOException e){
+            e.printStackTrace();
+            return "metrics: report not written";
+        }
+        return "metrics: " + timers.size() + " timers, " + counters.size() + " counters written to " + json.getPath();
+    }
+
+    private static String millis(long nanos){
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * register the metrics in the platform MBean server, each timer and counter being an attribute
+     */
+    public static void registerMBean(){
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if(!server.isRegistered(name)) server.registerMBean(new MetricsMBean(), name);
+        }catch (JMException e){
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * read-only MBean whose attributes are the current timers and counters:
+     * name.count, name.totalMs and name.maxMs for a timer, name for a counter
+     */
+    private static class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            AtomicLong counter = counters.get(attribute);
+            if(counter != null) return counter.get();
+            int dot = attribute.lastIndexOf('.');
+            Timer timer = dot < 0 ? null : timers.get(attribute.substring(0, dot));
+            if(timer != null){
+                switch (attribute.substring(dot + 1)){
+                    case "count": return timer.count.get();
+                    case "totalMs": return timer.nanos.get() / 1e6;
+                    case "maxMs": return timer.maxNanos.get() / 1e6;
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for(String attribute : attributes){
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                }catch (AttributeNotFoundException e){
+                    //a missing attribute is left out of the list
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("read-only attribute " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for(String timer : timers.keySet()){
+                attributes.add(new MBeanAttributeInfo(timer + ".count", Long.class.getName(), "calls of " + timer, true, false, false));
+                attributes.add(new MBeanAttributeInfo(timer + ".totalMs", Double.class.getName(), "total time of " + timer + " in ms", true, false, false));
+                attributes.add(new MBeanAttributeInfo(timer + ".maxMs", Double.class.getName(), "longest call of " + timer + " in ms", true, false, false));
+            }
+            for(String counter : counters.keySet()){
+                attributes.add(new MBeanAttributeInfo(counter, Long.class.getName(), counter, true, false, false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "timers and counters of the html viewer",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+
+}
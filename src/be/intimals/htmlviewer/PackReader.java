@@ -0,0 +1,113 @@
+package be.intimals.htmlviewer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * reader of the pages of a pack file written by PackWriter
+ *
+ * the index is read when the pack is opened, a page is read with a positional read of the file,
+ * so that a reader can be shared by several threads
+ */
+public class PackReader implements Closeable {
+
+    private FileChannel channel;
+    private Map<String, PackWriter.Entry> entries = new HashMap<>();
+
+    /**
+     * open a pack file and read its index
+     * @param file : pack file
+     * @throws IOException if the file is not a complete pack file
+     */
+    public PackReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer header = read(0, 8);
+            if(size < 20 || header.getInt() != PackWriter.MAGIC || header.getInt() != PackWriter.VERSION){
+                throw new IOException("not a pack file: " + file);
+            }
+            ByteBuffer trailer = read(size - 12, 12);
+            long indexOffset = trailer.getLong();
+            if(trailer.getInt() != PackWriter.MAGIC || indexOffset < 8 || indexOffset > size - 12){
+                throw new IOException("incomplete pack file: " + file);
+            }
+            ByteBuffer index = read(indexOffset, (int) (size - 12 - indexOffset));
+            int count = index.getInt();
+            for(int i = 0; i < count; ++i){
+                PackWriter.Entry entry = new PackWriter.Entry();
+                byte[] name = new byte[index.getInt()];
+                index.get(name);
+                entry.name = new String(name, StandardCharsets.UTF_8);
+                entry.offset = index.getLong();
+                entry.storedLength = index.getInt();
+                entry.length = index.getInt();
+                entry.method = index.get();
+                //the last version of a page added twice wins
+                entries.put(entry.name, entry);
+            }
+        }catch (IOException | RuntimeException e){
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("corrupted pack file: " + file, e);
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()){
+            int n = channel.read(buffer, position + buffer.position());
+            if(n < 0) throw new IOException("unexpected end of pack file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public boolean contains(String name){return entries.containsKey(name);}
+
+    public int size(){return entries.size();}
+
+    /**
+     * return the content of a page
+     * @param name : name of the page
+     * @return null if the pack has no such page
+     * @throws IOException
+     */
+    public byte[] read(String name) throws IOException {
+        PackWriter.Entry entry = entries.get(name);
+        if(entry == null) return null;
+        ByteBuffer data = read(entry.offset, entry.storedLength);
+        if(entry.method == PackWriter.STORED) return data.array();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.array());
+            byte[] page = new byte[entry.length];
+            int n = 0;
+            while(n < page.length && !inflater.finished()){
+                int inflated = inflater.inflate(page, n, page.length - n);
+                if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += inflated;
+            }
+            if(n != page.length) throw new IOException("corrupted page " + name);
+            return page;
+        }catch (DataFormatException e){
+            throw new IOException("corrupted page " + name, e);
+        }finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
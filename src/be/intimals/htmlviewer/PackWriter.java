@@ -0,0 +1,171 @@
+package be.intimals.htmlviewer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * writer of a pack file: all pages of a run in one file with an index of their offsets
+ *
+ * format, big endian:
+ * magic, version,
+ * data of the pages, each stored as it is or compressed with deflate,
+ * index: number of pages, then for each page its name, offset, stored length, length and method,
+ * trailer: offset of the index, magic.
+ * Pages are compressed by the threads adding them, only the append to the file is serialized.
+ */
+public class PackWriter implements Closeable {
+
+    static final int MAGIC = 0x4652504B; //"FRPK"
+    static final int VERSION = 1;
+    static final int STORED = 0;
+    static final int DEFLATED = 1;
+
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<byte[]> deflateBuffers = ThreadLocal.withInitial(() -> new byte[1 << 14]);
+
+    /**
+     * position of a page in the pack file
+     */
+    static class Entry {
+        String name;
+        long offset;
+        int storedLength;
+        int length;
+        int method;
+    }
+
+    private final File file;
+    private final boolean compress;
+    private FileChannel channel;
+    private long position;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+
+    /**
+     * create a pack file, replacing an existing one
+     * @param file : pack file
+     * @param compress : true to compress the pages with deflate
+     * @throws IOException
+     */
+    public PackWriter(File file, boolean compress) throws IOException {
+        this.file = file;
+        this.compress = compress;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        position = write(header, 0);
+    }
+
+    public File getFile(){return file;}
+
+    /**
+     * add a page, a page added twice is replaced
+     * @param name : name of the page
+     * @param bytes : content of the page
+     * @param length : number of bytes of the content
+     * @throws IOException
+     */
+    public void add(String name, byte[] bytes, int length) throws IOException {
+        Entry entry = new Entry();
+        entry.name = name;
+        entry.length = length;
+        entry.method = STORED;
+        byte[] data = bytes;
+        int dataLength = length;
+        if(compress){
+            byte[] compressed = deflate(bytes, length);
+            //keep pages which don't get smaller as they are
+            if(compressed.length < length){
+                data = compressed;
+                dataLength = compressed.length;
+                entry.method = DEFLATED;
+            }
+        }
+        entry.storedLength = dataLength;
+        synchronized (this) {
+            if(channel == null) throw new IOException("pack file closed: " + file);
+            entry.offset = position;
+            position += write(ByteBuffer.wrap(data, 0, dataLength), position);
+            entries.add(entry);
+            names.add(name);
+        }
+    }
+
+    private static byte[] deflate(byte[] bytes, int length){
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(bytes, 0, length);
+        deflater.finish();
+        byte[] buffer = deflateBuffers.get();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+        while(!deflater.finished()){
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private int write(ByteBuffer buffer, long at) throws IOException {
+        int bytes = buffer.remaining();
+        while(buffer.hasRemaining()){
+            at += channel.write(buffer, at);
+        }
+        return bytes;
+    }
+
+    /**
+     * return the number of pages added
+     * @return
+     */
+    public synchronized int size(){return entries.size();}
+
+    /**
+     * return true if a page was added
+     * @param name
+     * @return
+     */
+    public synchronized boolean contains(String name){return names.contains(name);}
+
+    /**
+     * write the index and close the pack file
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(channel == null) return;
+        try {
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            ByteBuffer record = ByteBuffer.allocate(4);
+            index.write(record.putInt(0, entries.size()).array());
+            for(Entry entry : entries){
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buffer = ByteBuffer.allocate(4 + name.length + 8 + 4 + 4 + 1);
+                buffer.putInt(name.length).put(name).putLong(entry.offset)
+                        .putInt(entry.storedLength).putInt(entry.length).put((byte) entry.method);
+                index.write(buffer.array());
+            }
+            long indexOffset = position;
+            position += write(ByteBuffer.wrap(index.toByteArray()), position);
+            ByteBuffer trailer = ByteBuffer.allocate(12).putLong(indexOffset).putInt(MAGIC);
+            trailer.flip();
+            position += write(trailer, position);
+            channel.truncate(position);
+        }finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+}
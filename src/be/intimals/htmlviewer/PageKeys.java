@@ -0,0 +1,148 @@
+package be.intimals.htmlviewer;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static be.intimals.htmlviewer.Utils.*;
+
+/**
+ * keys of the generated pages: a fingerprint of everything the content of a page depends on
+ *
+ * a page whose key did not change since the previous run does not need to be rendered again.
+ * List pages depend on the patterns, supports, clusters and matches read from the result files,
+ * a match page also depends on size and modification time of its Python and XML source files.
+ */
+public class PageKeys {
+
+    private ResultModel model;
+    //fingerprint of the format of the pages, shared by all keys
+    private long base;
+    //fingerprints of the source files, keyed by Python file name
+    private Map<String, Long> sourceFingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * @param model : results shown by the pages
+     * @param title : name of the result directory
+     * @param pageSize : maximum number of entries of a list page, 0 for no limit
+     * @param context : number of lines shown around the matched lines, -1 for the whole file
+     */
+    public PageKeys(ResultModel model, String title, int pageSize, int context){
+        this.model = model;
+        this.base = new Fingerprint()
+                .add(PageRenderer.FORMAT_VERSION)
+                .add(title)
+                .add(model.isTwoClass())
+                .add(pageSize)
+                .add(context)
+                .get();
+    }
+
+    private Fingerprint start(String page){
+        return new Fingerprint().add(base).add(page);
+    }
+
+    private void addSupports(Fingerprint fingerprint, int patternID){
+        fingerprint.add(model.getOldSupport(patternID)).add(model.getNewSupport(patternID));
+    }
+
+    /**
+     * return key of a page of a list
+     * @param listKey : key of the whole list
+     * @param page : number of the page, starting at 1
+     * @return
+     */
+    public String listPage(String listKey, int page){
+        return new Fingerprint().add(listKey).add(page).toString();
+    }
+
+    public String patternsPage(){
+        Fingerprint fingerprint = start("patterns").add(model.getNbPatterns());
+        for(int i = 1; i <= model.getNbPatterns(); ++i){
+            addSupports(fingerprint, i);
+        }
+        return fingerprint.toString();
+    }
+
+    public String clustersPage(){
+        return start("clusters").add(model.getClusters().size()).toString();
+    }
+
+    /**
+     * @param clusterID : number of the cluster, starting at 1
+     * @return
+     */
+    public String clusterPage(int clusterID){
+        int[] patternIDs = model.getClusters().get(clusterID - 1);
+        Fingerprint fingerprint = start("cluster").add(patternIDs);
+        for(int patternID : patternIDs){
+            addSupports(fingerprint, patternID);
+        }
+        return fingerprint.toString();
+    }
+
+    public String matchesPage(int patternID, MatchSet matchSet){
+        Fingerprint fingerprint = start("matches").add(patternID).add(matchSet.getLabel());
+        fingerprint.add(matchSet.countMatches(patternID));
+        for(int k = 0; k < matchSet.countMatches(patternID); ++k){
+            fingerprint.add(matchSet.getFullName(matchSet.getMatch(patternID, k)));
+        }
+        return fingerprint.toString();
+    }
+
+    public String dataIndex(){
+        Fingerprint fingerprint = start("data index").add(model.getNbPatterns())
+                .add(model.getOldSupports()).add(model.getNewSupports()).add(model.getClusters().size());
+        for(int[] cluster : model.getClusters()){
+            fingerprint.add(cluster);
+        }
+        return fingerprint.toString();
+    }
+
+    public String patternData(int patternID, MatchSet matchSet){
+        Fingerprint fingerprint = start("data pattern").add(matchesPage(patternID, matchSet));
+        for(int count = 1; count <= matchSet.countMatches(patternID); ++count){
+            fingerprint.add(matchPage(patternID, count, matchSet));
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * @param matchSet : matches of one class grouped by pattern ID
+     * @param fileIndex : index of the source file in the match set
+     * @return
+     */
+    public String sourceData(MatchSet matchSet, int fileIndex){
+        String pyFileName = matchSet.getSourceDir()+"/"+getFileName(matchSet.getFileNames()[fileIndex]);
+        return start("data source").add(pyFileName).add(sourceFingerprint(pyFileName)).toString();
+    }
+
+    /**
+     * @param patternID
+     * @param count : number of the match in its pattern, starting at 1
+     * @param matchSet : matches of one class grouped by pattern ID
+     * @return
+     */
+    public String matchPage(int patternID, int count, MatchSet matchSet){
+        int match = matchSet.getMatch(patternID, count - 1);
+        String pyFileName = matchSet.getSourceDir()+"/"+getFileName(matchSet.getFullName(match));
+        return start("match")
+                .add(pyFileName)
+                .add(matchSet.getNodeIDs(match))
+                .add(sourceFingerprint(pyFileName))
+                .toString();
+    }
+
+    /**
+     * return fingerprint of a Python file and of its XML file, computed once per run
+     * @param pyFileName
+     * @return
+     */
+    private long sourceFingerprint(String pyFileName){
+        return sourceFingerprints.computeIfAbsent(pyFileName, fileName -> {
+            String xmlFile = PageRenderer.xmlFileName(fileName);
+            return new Fingerprint().addFile(new File(fileName)).addFile(new File(xmlFile)).get();
+        });
+    }
+
+}
@@ -0,0 +1,92 @@
+package be.intimals.htmlviewer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * manifest of the html directory: the key of every generated page
+ *
+ * the manifest of the previous run tells which pages are up to date,
+ * the manifest of this run lists the pages generated or kept by this run.
+ * Pages of the previous run missing from this run are stale and deleted.
+ */
+public class PageManifest {
+
+    public static final String FILE_NAME = ".manifest.properties";
+
+    private File dir;
+    private Properties previous = new Properties();
+    private Map<String, String> current = new ConcurrentHashMap<>();
+
+    private int kept;
+
+    /**
+     * read the manifest of a html directory, an empty manifest if there is none
+     * @param dir : html directory
+     */
+    public PageManifest(File dir){
+        this.dir = dir;
+        File file = new File(dir, FILE_NAME);
+        if(file.exists()){
+            try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)){
+                previous.load(in);
+            }catch (IOException e){
+                //the pages are regenerated
+                previous.clear();
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * return true if a page with the same key was generated by the previous run and still exists,
+     * the page is then kept by this run
+     * @param fileName : name of the page
+     * @param key : key of the page in this run
+     * @return
+     */
+    public synchronized boolean isUpToDate(String fileName, String key){
+        if(!key.equals(previous.getProperty(fileName)) || !new File(dir, fileName).exists()) return false;
+        current.put(fileName, key);
+        ++kept;
+        return true;
+    }
+
+    /**
+     * record a page generated by this run
+     * @param fileName
+     * @param key
+     */
+    public void put(String fileName, String key){
+        current.put(fileName, key);
+    }
+
+    /**
+     * delete the pages of the previous run which are not generated by this run and save the manifest
+     * @return number of deleted pages
+     */
+    public synchronized int save(){
+        int deleted = 0;
+        for(String fileName : previous.stringPropertyNames()){
+            //only pages of the html directory itself are deleted
+            if(fileName.contains("/") || fileName.contains("\\") || current.containsKey(fileName)) continue;
+            if(new File(dir, fileName).delete()) ++deleted;
+        }
+        Properties properties = new Properties();
+        properties.putAll(current);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(new File(dir, FILE_NAME)), StandardCharsets.UTF_8)){
+            properties.store(out, "keys of the generated pages");
+        }catch (IOException e){
+            e.printStackTrace();
+        }
+        return deleted;
+    }
+
+    public synchronized int getKept(){return kept;}
+
+    public int size(){return current.size();}
+
+}
@@ -0,0 +1,322 @@
+package be.intimals.htmlviewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+import static be.intimals.htmlviewer.Utils.*;
+import static be.intimals.htmlviewer.Variables.*;
+
+/**
+ * render the pages of a result model
+ *
+ * each page is streamed to a Writer: lists of patterns, clusters and matches
+ * are written entry by entry and never built in memory
+ */
+public class PageRenderer {
+
+    //version of the markup of the pages, to increase when it changes so that incremental runs regenerate all pages
+    public static final int FORMAT_VERSION = 2;
+
+    private ResultModel model;
+    //name of the result directory
+    private String title;
+    //parsed source files shared by all matches, keyed by Python file name
+    private LruCache<String, SourceFile> sourceCache;
+    //span files of the source XML files, null to parse the XML files
+    private SpanCache spanCache;
+    //maximum number of entries of a list page, 0 for no limit
+    private int pageSize;
+    //number of lines shown around the matched lines of a match page, -1 for the whole file
+    private int context;
+
+    public PageRenderer(ResultModel model, String title, LruCache<String, SourceFile> sourceCache, SpanCache spanCache,
+                        int pageSize, int context){
+        this.model = model;
+        this.title = title;
+        this.sourceCache = sourceCache;
+        this.spanCache = spanCache;
+        this.pageSize = pageSize;
+        this.context = context;
+    }
+
+    /**
+     * return name of the XML file of a Python file
+     * @param pyFileName
+     * @return
+     */
+    public static String xmlFileName(String pyFileName){
+        return pyFileName.substring(0, pyFileName.length() - 2) + "xml";
+    }
+
+    /**
+     * return file URI of a Python file, to link the whole file from a page showing a part of it
+     * @param pyFileName
+     * @return
+     */
+    public static String fileURI(String pyFileName){
+        return new File(pyFileName).getAbsoluteFile().toPath().toUri().toString();
+    }
+
+    /**
+     * return name of the page listing the matches of a pattern
+     * @param patternID
+     * @param label : class label of the matches, "_", "old" or "new"
+     * @return
+     */
+    public static String matchesPageName(int patternID, String label){
+        return "pattern_"+patternID+"_matches_"+label+".html";
+    }
+
+    /**
+     * return name of the page showing a match
+     * @param patternID
+     * @param count : number of the match in its pattern, starting at 1
+     * @param label : class label of the matches, "_", "old" or "new"
+     * @return
+     */
+    public static String matchPageName(int patternID, int count, String label){
+        return "patternID_"+patternID+"_matchID_"+count+"_"+label+".html";
+    }
+
+    /**
+     * return name of the page listing the patterns of a cluster
+     * @param clusterID : number of the cluster, starting at 1
+     * @return
+     */
+    public static String clusterPageName(int clusterID){
+        return "cluster_"+clusterID+"_patterns.html";
+    }
+
+    /**
+     * write a link to a page shown in another frame
+     * @param out
+     * @param href : linked page
+     * @param target : frame showing the page
+     * @param active : true for the link selected when the page is loaded
+     * @param text : text of the link
+     * @throws IOException
+     */
+    private static void writeLink(Writer out, String href, String target, boolean active, String text) throws IOException {
+        out.write("<a class=\"nav-link\" href=\"");
+        out.write(href);
+        out.write("\" target=\"");
+        out.write(target);
+        out.write(active ? "\" id=\"act\">" : "\">");
+        out.write(text);
+        out.write("</a>");
+    }
+
+    /**
+     * write an entry of a list of links containing a single link
+     * @throws IOException
+     */
+    private static void writeNavItem(Writer out, String href, String target, boolean active, String text) throws IOException {
+        out.write("<li class=\"nav-item\">");
+        writeLink(out, href, target, active, text);
+        out.write("</li>\n");
+    }
+
+    /**
+     * write an entry of a list of patterns linking to the matches of a pattern in one or two classes
+     * @throws IOException
+     */
+    private void writePatternItem(Writer out, int patternID, boolean active) throws IOException {
+        out.write("<li class=\"nav-item\">pattern-");
+        out.write(String.valueOf(patternID));
+        out.write(": \n");
+        if(model.isTwoClass()){
+            writeLink(out, matchesPageName(patternID, "old"), "center", active, model.getOldSupport(patternID) + " matches pos");
+            out.write("   /\n");
+            writeLink(out, matchesPageName(patternID, "new"), "center", false, model.getNewSupport(patternID) + " matches nag");
+        }else{
+            writeLink(out, matchesPageName(patternID, "_"), "center", active, model.getOldSupport(patternID) + " matches pos");
+        }
+        out.write("</li>\n");
+    }
+
+    private static void writeListHeader(Writer out, String caption) throws IOException {
+        out.write(HTMLHEADER);
+        out.write("<p>");
+        out.write(caption);
+        out.write("</p>\n");
+        out.write("<ul class=\"navbar-nav\">\n");
+    }
+
+    /**
+     * close a list, with links to the previous and next pages of the list if it has several pages
+     * @param out
+     * @param fileName : name of the first page of the list
+     * @param page : number of this page, starting at 1
+     * @param nbPages : number of pages of the list
+     * @throws IOException
+     */
+    private static void writeListClose(Writer out, String fileName, int page, int nbPages) throws IOException {
+        out.write("</ul>\n");
+        if(nbPages > 1){
+            out.write("<p class=\"pager\">");
+            if(page > 1) writePagerLink(out, pageName(fileName, page - 1), "&lt; previous");
+            out.write(" page " + page + " / " + nbPages + " ");
+            if(page < nbPages) writePagerLink(out, pageName(fileName, page + 1), "next &gt;");
+            out.write("</p>\n");
+        }
+        out.write(HTMLCLOSE);
+    }
+
+    private static void writePagerLink(Writer out, String href, String text) throws IOException {
+        out.write("<a href=\"");
+        out.write(href);
+        out.write("\">");
+        out.write(text);
+        out.write("</a>");
+    }
+
+    /**
+     * return name of a page of a list, the first page keeps the name of the list
+     * @param fileName : name of the first page of the list, e.g. patterns.html
+     * @param page : number of the page, starting at 1
+     * @return e.g. patterns_p2.html
+     */
+    public static String pageName(String fileName, int page){
+        if(page == 1) return fileName;
+        return fileName.substring(0, fileName.length() - ".html".length()) + "_p" + page + ".html";
+    }
+
+    /**
+     * return number of pages of a list
+     * @param nbItems : number of entries of the list
+     * @return at least 1, an empty list has one empty page
+     */
+    public int countPages(int nbItems){
+        if(pageSize <= 0 || nbItems <= pageSize) return 1;
+        return (nbItems + pageSize - 1) / pageSize;
+    }
+
+    private int firstItem(int page){
+        return pageSize <= 0 ? 0 : (page - 1) * pageSize;
+    }
+
+    private int endItem(int page, int nbItems){
+        return pageSize <= 0 ? nbItems : (int) Math.min(nbItems, (long) page * pageSize);
+    }
+
+    public int countPatternsPages(){return countPages(model.getNbPatterns());}
+
+    public int countClustersPages(){return countPages(model.getClusters().size());}
+
+    public int countClusterPages(int clusterID){return countPages(model.getClusters().get(clusterID - 1).length);}
+
+    public int countMatchesPages(int patternID, MatchSet matchSet){return countPages(matchSet.countMatches(patternID));}
+
+    /**
+     * write a page of patterns.html listing all patterns
+     * @param page : number of the page, starting at 1
+     * @param out
+     * @throws IOException
+     */
+    public void writePatternsPage(int page, Writer out) throws IOException {
+        int nbPattern = model.getNbPatterns();//count number of patterns
+        int first = firstItem(page) + 1;
+        int end = endItem(page, nbPattern);
+        if(model.isTwoClass()){
+            writeListHeader(out, "List patterns ");
+            for(int i = first; i<=end; ++i){
+                writePatternItem(out, i, i == first);
+            }
+        }else{
+            writeListHeader(out, " Patterns: " + title);
+            for(int i = first; i<=end; ++i){
+                writeNavItem(out, matchesPageName(i, "_"), "center", i == first, "pattern " + i);
+            }
+        }
+        writeListClose(out, "patterns.html", page, countPatternsPages());
+    }
+
+    /**
+     * write a page of clusters.html listing all clusters
+     * @param page : number of the page, starting at 1
+     * @param out
+     * @throws IOException
+     */
+    public void writeClustersPage(int page, Writer out) throws IOException {
+        writeListHeader(out, "Clusters");
+        // link to all patterns
+        if(page == 1) writeNavItem(out, "patterns.html", "left", true, "All patterns");
+        // for each cluster, create a link to the list of its patterns
+        for(int countCluster = firstItem(page) + 1; countCluster <= endItem(page, model.getClusters().size()); ++countCluster){
+            writeNavItem(out, clusterPageName(countCluster), "left", false, "cluster " + countCluster);
+        }
+        writeListClose(out, "clusters.html", page, countClustersPages());
+    }
+
+    /**
+     * write a page of the list of the patterns of a cluster
+     * @param clusterID : number of the cluster, starting at 1
+     * @param page : number of the page, starting at 1
+     * @param out
+     * @throws IOException
+     */
+    public void writeClusterPage(int clusterID, int page, Writer out) throws IOException {
+        writeListHeader(out, "List of patterns");
+        int[] patternIDs = model.getClusters().get(clusterID - 1);
+        int first = firstItem(page);
+        for(int i = first; i < endItem(page, patternIDs.length); ++i){
+            writePatternItem(out, patternIDs[i], i == first);
+        }
+        writeListClose(out, clusterPageName(clusterID), page, countClusterPages(clusterID));
+    }
+
+    /**
+     * write a page of the list of the matches of a pattern
+     * @param patternID
+     * @param matchSet : matches of one class grouped by pattern ID
+     * @param page : number of the page, starting at 1
+     * @param out
+     * @throws IOException
+     */
+    public void writeMatchesPage(int patternID, MatchSet matchSet, int page, Writer out) throws IOException {
+        writeListHeader(out, "Matches of pattern-" + patternID);
+        int first = firstItem(page);
+        for (int k = first; k < endItem(page, matchSet.countMatches(patternID)); ++k) {
+            int count = k + 1;
+            String fullName = getLastName(matchSet.getFullName(matchSet.getMatch(patternID, k)));
+            // add link id="act" to the first match of the page
+            writeNavItem(out, matchPageName(patternID, count, matchSet.getLabel()), "right", k == first,
+                    "match-" + count + ": " + fullName);
+        }
+        writeListClose(out, matchesPageName(patternID, matchSet.getLabel()), page, countMatchesPages(patternID, matchSet));
+    }
+
+    /**
+     * write the page showing the source code of a match with its color markers
+     * @param patternID
+     * @param count : number of the match in its pattern, starting at 1
+     * @param matchSet : matches of one class grouped by pattern ID
+     * @param out
+     * @throws IOException
+     */
+    public void writeMatchPage(int patternID, int count, MatchSet matchSet, Writer out) throws IOException {
+        int match = matchSet.getMatch(patternID, count - 1);
+        //get Python file name from a match
+        String pyFileName = matchSet.getSourceDir()+"/"+getFileName(matchSet.getFullName(match));
+        String xmlFile = xmlFileName(pyFileName);
+        //read python file and index AST nodes of the XML document, once per file
+        SourceFile sourceFile = sourceCache.get(pyFileName, fileName -> SourceFile.read(fileName, xmlFile, spanCache));
+        //find lines of a match in xmlFile
+        MatchRenderer matchRenderer = new MatchRenderer(sourceFile, matchSet.getNodeIDs(match));
+        //add markers to lines corresponding lines in python file
+        out.write(HTMLHEADER);
+        out.write("Fullname: ");
+        out.write(pyFileName);
+        if(context >= 0){
+            out.write(" <a href=\"");
+            out.write(fileURI(pyFileName));
+            out.write("\" target=\"_blank\">whole file</a>");
+        }
+        out.write("<code>\n");
+        matchRenderer.addMarkers(out, context);
+        out.write("</code>\n");
+        out.write(HTMLCLOSE);
+    }
+
+}
@@ -0,0 +1,39 @@
+package be.intimals.htmlviewer;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * registry of the match pages already written in a run
+ *
+ * the matches of a pattern (its pattern_*_matches_*.html and patternID_*_matchID_*.html files)
+ * are rendered by the first view listing the pattern, all patterns or a cluster,
+ * and reused by the other views
+ */
+public class RenderRegistry {
+
+    private final Set<String> rendered = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    /**
+     * claim the pages of a pattern
+     * @param patternID
+     * @param label : class label of the matches, "_", "old" or "new"
+     * @return true if the pages still have to be rendered, false if they are already written
+     */
+    public boolean claim(int patternID, String label){
+        boolean isNew = rendered.add(patternID + "_" + label);
+        if(!isNew) skipped.incrementAndGet();
+        return isNew;
+    }
+
+    /**
+     * return a one-line summary of the registry
+     * @return
+     */
+    public String report(){
+        return "match pages: " + rendered.size() + " patterns rendered, " + skipped + " repeated renderings skipped";
+    }
+
+}
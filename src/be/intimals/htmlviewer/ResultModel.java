@@ -0,0 +1,198 @@
+package be.intimals.htmlviewer;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static be.intimals.htmlviewer.Utils.*;
+
+/**
+ * results of a FREQTALS run: patterns with their support, matches grouped by pattern and clusters
+ *
+ * the model is loaded once per run and shared by all page generators
+ */
+public class ResultModel {
+
+    private boolean twoClass;
+    private int nbPatterns;
+    //supports of each pattern ID, "pos-nag"
+    private int[] oldSupports = new int[0];
+    private int[] newSupports = new int[0];
+    //matches of each class: "_" for one class, "old" and "new" for two classes
+    private List<MatchSet> matchSets = new ArrayList<>();
+    //pattern IDs of each cluster
+    private List<int[]> clusters = new ArrayList<>();
+
+    private ResultModel(){
+    }
+
+    ResultModel(boolean twoClass, int nbPatterns, int[] oldSupports, int[] newSupports,
+                List<MatchSet> matchSets, List<int[]> clusters){
+        this.twoClass = twoClass;
+        this.nbPatterns = nbPatterns;
+        this.oldSupports = oldSupports;
+        this.newSupports = newSupports;
+        this.matchSets = matchSets;
+        this.clusters = clusters;
+    }
+
+    /**
+     * read the model from the snapshot of the result directory if it is up to date,
+     * otherwise read the result files and write a new snapshot
+     * @param config : configuration of the run
+     * @param configFile : configuration file, the snapshot is stored next to it
+     * @param inputSourceDir : directory containing source files
+     * @param inputResultDir : directory containing results
+     * @return
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public static ResultModel loadCached(Config config, String configFile, String inputSourceDir, String inputResultDir)
+            throws IOException, XMLStreamException {
+        long start = System.nanoTime();
+        File snapshot = new File(configFile.substring(0, configFile.length() - ".properties".length()) + ".snapshot");
+        Fingerprint fingerprint = new Fingerprint().add(inputSourceDir).addFile(new File(configFile));
+        for(String fileName : inputFiles(config, inputResultDir)){
+            fingerprint.addFile(new File(fileName));
+        }
+        ResultModel model = ResultSnapshot.read(snapshot, fingerprint.get());
+        if(model != null){
+            Metrics.count("snapshot.hits");
+            System.out.println("result model: read snapshot in " + (System.nanoTime() - start) / 1000000 + " ms");
+            return model;
+        }
+        Metrics.count("snapshot.misses");
+        model = load(config, inputSourceDir, inputResultDir);
+        try {
+            ResultSnapshot.write(model, snapshot, fingerprint.get());
+        }catch (IOException e){
+            e.printStackTrace();
+        }
+        System.out.println("result model: parsed result files in " + (System.nanoTime() - start) / 1000000 + " ms");
+        return model;
+    }
+
+    /**
+     * return the result files of a run: matches of each class, patterns and clusters
+     * @param config : configuration of the run
+     * @param inputResultDir : directory containing results
+     * @return
+     */
+    private static List<String> inputFiles(Config config, String inputResultDir){
+        List<String> files = new ArrayList<>();
+        if(config.get2Class()){
+            files.add(inputResultDir+"/"+ getLastName(config.getOutputMatches1()));
+            files.add(inputResultDir+"/"+ getLastName(config.getOutputMatches2()));
+        }else{
+            files.add(inputResultDir+"/"+ getLastName(config.getOutputMatches()));
+        }
+        files.add(inputResultDir+"/"+getLastName(config.getOutputPath()));
+        //clusters file of the first matches file
+        String matchesFile = files.get(0);
+        files.add(matchesFile.substring(0, matchesFile.length()-4)+"_clusters.xml");
+        return files;
+    }
+
+    /**
+     * read patterns, matches and clusters files of a result directory
+     * @param config : configuration of the run
+     * @param inputSourceDir : directory containing source files
+     * @param inputResultDir : directory containing results
+     * @return
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public static ResultModel load(Config config, String inputSourceDir, String inputResultDir) throws IOException, XMLStreamException {
+        long start = System.nanoTime();
+        ResultModel model = new ResultModel();
+        model.twoClass = config.get2Class();
+
+        List<String> files = inputFiles(config, inputResultDir);
+        if(model.twoClass){
+            String matchesFile = files.get(0);
+            String matchesFile2 = files.get(1);
+            String oldInputSourceDir = inputSourceDir+"/"+getLastName(config.getInputFiles1());//"pos";
+            String newInputSourceDir = inputSourceDir+"/"+getLastName(config.getInputFiles2());//"nag";
+            model.matchSets.add(ResultReader.readMatches(matchesFile, "old", oldInputSourceDir));
+            model.matchSets.add(ResultReader.readMatches(matchesFile2, "new", newInputSourceDir));
+        }else{
+            String matchesFile = files.get(0);
+            model.matchSets.add(ResultReader.readMatches(matchesFile, "_", inputSourceDir));
+        }
+
+        //read all patterns
+        String patternFile = files.get(files.size() - 2);
+        IntList ids = new IntList();
+        IntList oldSupports = new IntList();
+        IntList newSupports = new IntList();
+        ResultReader.readPatterns(patternFile, ids, oldSupports, newSupports);
+        model.nbPatterns = ids.size();
+        int maxID = 0;
+        for(int i = 0; i < ids.size(); ++i){
+            maxID = Math.max(maxID, ids.get(i));
+        }
+        model.oldSupports = new int[maxID + 1];
+        model.newSupports = new int[maxID + 1];
+        //keep the first support of a pattern ID
+        for(int i = ids.size() - 1; i >= 0; --i){
+            if(ids.get(i) < 0) continue;
+            model.oldSupports[ids.get(i)] = oldSupports.get(i);
+            model.newSupports[ids.get(i)] = newSupports.get(i);
+        }
+
+        //read all clusters
+        String clusterFile = files.get(files.size() - 1);
+        try {
+            model.clusters = ResultReader.readClusters(clusterFile);
+        }catch (IOException | XMLStreamException e){
+            e.printStackTrace();
+        }
+        Metrics.time("results.parse", start);
+        return model;
+    }
+
+    public boolean isTwoClass(){return twoClass;}
+
+    public int getNbPatterns(){return nbPatterns;}
+
+    /**
+     * return support of a pattern in the first class ("pos"), 0 if the pattern is unknown
+     * @param patternID
+     * @return
+     */
+    public int getOldSupport(int patternID){
+        return patternID >= 0 && patternID < oldSupports.length ? oldSupports[patternID] : 0;
+    }
+
+    /**
+     * return support of a pattern in the second class ("nag"), 0 if the pattern is unknown
+     * @param patternID
+     * @return
+     */
+    public int getNewSupport(int patternID){
+        return patternID >= 0 && patternID < newSupports.length ? newSupports[patternID] : 0;
+    }
+
+    public List<MatchSet> getMatchSets(){return matchSets;}
+
+    int[] getOldSupports(){return oldSupports;}
+
+    int[] getNewSupports(){return newSupports;}
+
+    /**
+     * return the matches of a class
+     * @param label : "_" for one class, "old" or "new" for two classes
+     * @return null if there is no class with this label
+     */
+    public MatchSet getMatchSet(String label){
+        for(MatchSet matchSet : matchSets){
+            if(matchSet.getLabel().equals(label)) return matchSet;
+        }
+        return null;
+    }
+
+    public List<int[]> getClusters(){return clusters;}
+
+}
@@ -0,0 +1,155 @@
+package be.intimals.htmlviewer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * streaming readers of the FREQTALS patterns, matches and clusters files
+ *
+ * the files are read with StAX and only the fields used by the viewer are kept,
+ * in primitive arrays; no DOM is built
+ */
+public class ResultReader {
+
+    private static final XMLInputFactory factory = XMLInputFactory.newInstance();
+
+    /**
+     * read all matches of a matches file
+     * @param fileName : matches file
+     * @param label : class label of the matches, "_", "old" or "new"
+     * @param sourceDir : directory containing the source files of the matches
+     * @return
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public static MatchSet readMatches(String fileName, String label, String sourceDir) throws IOException, XMLStreamException {
+        IntList patternIDs = new IntList();
+        IntList fileIndex = new IntList();
+        IntList nodeStart = new IntList();
+        IntList nodeIDs = new IntList();
+        //table of distinct full names
+        Map<String, Integer> fileNameIndex = new HashMap<>();
+        List<String> fileNames = new ArrayList<>();
+
+        try (InputStream input = new BufferedInputStream(new FileInputStream(fileName), 1 << 16)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            //depth of the current element and of the current match element
+            int depth = 0;
+            int matchDepth = -1;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    ++depth;
+                    if (matchDepth < 0 && reader.getLocalName().equals("match")) {
+                        matchDepth = depth;
+                        patternIDs.add(parseInt(reader.getAttributeValue(null, "PatternID"), -1));
+                        String fullName = reader.getAttributeValue(null, "FullName");
+                        Integer index = fileNameIndex.get(fullName);
+                        if (index == null) {
+                            index = fileNames.size();
+                            fileNameIndex.put(fullName, index);
+                            fileNames.add(fullName);
+                        }
+                        fileIndex.add(index);
+                        nodeStart.add(nodeIDs.size());
+                    } else if (depth == matchDepth + 1) {
+                        //a node of the current match
+                        int id = parseInt(reader.getAttributeValue(null, "ID"), -1);
+                        if (id >= 0) nodeIDs.add(id);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == matchDepth) matchDepth = -1;
+                    --depth;
+                }
+            }
+            reader.close();
+        }
+        nodeStart.add(nodeIDs.size());
+        return new MatchSet(label, sourceDir, patternIDs.toArray(), fileIndex.toArray(),
+                fileNames.toArray(new String[0]), nodeStart.toArray(), nodeIDs.toArray());
+    }
+
+    /**
+     * read IDs and supports of all patterns of a patterns file
+     * @param fileName : patterns file
+     * @param ids : receives the ID of each pattern
+     * @param oldSupports : receives the first support of each pattern (class "pos")
+     * @param newSupports : receives the second support of each pattern (class "nag")
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public static void readPatterns(String fileName, IntList ids, IntList oldSupports, IntList newSupports) throws IOException, XMLStreamException {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(fileName), 1 << 16)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("subtree")) {
+                    ids.add(parseInt(reader.getAttributeValue(null, "id"), -1));
+                    //support is "pos-nag"
+                    String support = reader.getAttributeValue(null, "support");
+                    String[] temp = support == null ? new String[0] : support.split("-");
+                    oldSupports.add(temp.length > 0 ? parseInt(temp[0], 0) : 0);
+                    newSupports.add(temp.length > 1 ? parseInt(temp[1], 0) : 0);
+                }
+            }
+            reader.close();
+        }
+    }
+
+    /**
+     * read pattern IDs of all clusters of a clusters file
+     * @param fileName : clusters file
+     * @return
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public static List<int[]> readClusters(String fileName) throws IOException, XMLStreamException {
+        List<int[]> clusters = new ArrayList<>();
+        try (InputStream input = new BufferedInputStream(new FileInputStream(fileName), 1 << 16)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            int depth = 0;
+            int clusterDepth = -1;
+            IntList patterns = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    ++depth;
+                    if (clusterDepth < 0 && reader.getLocalName().equals("cluster")) {
+                        clusterDepth = depth;
+                        patterns = new IntList();
+                    } else if (depth == clusterDepth + 1) {
+                        //a pattern of the current cluster
+                        patterns.add(parseInt(reader.getAttributeValue(null, "ID"), -1));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == clusterDepth) {
+                        clusters.add(patterns.toArray());
+                        clusterDepth = -1;
+                    }
+                    --depth;
+                }
+            }
+            reader.close();
+        }
+        return clusters;
+    }
+
+    private static int parseInt(String value, int defaultValue){
+        if(value == null) return defaultValue;
+        try {
+            return Integer.valueOf(value.trim());
+        }catch (NumberFormatException e){
+            return defaultValue;
+        }
+    }
+
+}
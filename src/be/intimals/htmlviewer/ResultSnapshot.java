@@ -0,0 +1,135 @@
+package be.intimals.htmlviewer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * binary snapshot of a result model, so that a result directory is parsed once
+ *
+ * format, big endian:
+ * magic, version, fingerprint of the input files,
+ * two-class flag, number of patterns, old supports, new supports,
+ * match sets (label, source directory, pattern IDs, file index, file names, node start, node IDs),
+ * clusters.
+ * Arrays are stored as their length followed by their values, strings as UTF-8 arrays of bytes.
+ * A snapshot is read from a memory-mapped file and ignored if its version or fingerprint differ.
+ */
+public class ResultSnapshot {
+
+    private static final int MAGIC = 0x46525356; //"FRSV"
+    private static final int VERSION = 1;
+
+    /**
+     * read a snapshot
+     * @param file : snapshot file
+     * @param fingerprint : fingerprint of the current input files
+     * @return null if there is no valid snapshot for these input files
+     */
+    public static ResultModel read(File file, long fingerprint){
+        if(!file.exists()) return null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != fingerprint) return null;
+            boolean twoClass = in.get() != 0;
+            int nbPatterns = in.getInt();
+            int[] oldSupports = readInts(in);
+            int[] newSupports = readInts(in);
+            List<MatchSet> matchSets = new ArrayList<>();
+            int nbMatchSets = in.getInt();
+            for(int i = 0; i < nbMatchSets; ++i){
+                String label = readString(in);
+                String sourceDir = readString(in);
+                int[] patternIDs = readInts(in);
+                int[] fileIndex = readInts(in);
+                String[] fileNames = new String[in.getInt()];
+                for(int j = 0; j < fileNames.length; ++j){
+                    fileNames[j] = readString(in);
+                }
+                int[] nodeStart = readInts(in);
+                int[] nodeIDs = readInts(in);
+                matchSets.add(new MatchSet(label, sourceDir, patternIDs, fileIndex, fileNames, nodeStart, nodeIDs));
+            }
+            List<int[]> clusters = new ArrayList<>();
+            int nbClusters = in.getInt();
+            for(int i = 0; i < nbClusters; ++i){
+                clusters.add(readInts(in));
+            }
+            return new ResultModel(twoClass, nbPatterns, oldSupports, newSupports, matchSets, clusters);
+        }catch (IOException | RuntimeException e){
+            //corrupted or truncated snapshot, the result files are parsed again
+            return null;
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in){
+        int[] values = new int[in.getInt()];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * values.length);
+        return values;
+    }
+
+    private static String readString(ByteBuffer in){
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * write a snapshot, replacing the previous one once it is complete
+     * @param model
+     * @param file : snapshot file
+     * @param fingerprint : fingerprint of the input files of the model
+     * @throws IOException
+     */
+    public static void write(ResultModel model, File file, long fingerprint) throws IOException {
+        Path tmp = new File(file.getPath() + ".tmp").toPath();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeByte(model.isTwoClass() ? 1 : 0);
+            out.writeInt(model.getNbPatterns());
+            writeInts(out, model.getOldSupports());
+            writeInts(out, model.getNewSupports());
+            out.writeInt(model.getMatchSets().size());
+            for(MatchSet matchSet : model.getMatchSets()){
+                writeString(out, matchSet.getLabel());
+                writeString(out, matchSet.getSourceDir());
+                writeInts(out, matchSet.getPatternIDs());
+                writeInts(out, matchSet.getFileIndex());
+                out.writeInt(matchSet.getFileNames().length);
+                for(String fileName : matchSet.getFileNames()){
+                    writeString(out, fileName);
+                }
+                writeInts(out, matchSet.getNodeStart());
+                writeInts(out, matchSet.getAllNodeIDs());
+            }
+            out.writeInt(model.getClusters().size());
+            for(int[] cluster : model.getClusters()){
+                writeInts(out, cluster);
+            }
+        }
+        Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for(int value : values) out.writeInt(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+}
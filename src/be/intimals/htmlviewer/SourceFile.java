@@ -0,0 +1,42 @@
+package be.intimals.htmlviewer;
+
+import static be.intimals.htmlviewer.Utils.*;
+
+/**
+ * a Python source file with the index of its AST XML file
+ */
+public class SourceFile {
+
+    private SourceText lines;
+    private SourceIndex index;
+
+    public SourceFile(SourceText lines, SourceIndex index){
+        this.lines = lines;
+        this.index = index;
+    }
+
+    /**
+     * read a Python file and index its XML file
+     * @param pythonFile : Python file
+     * @param xmlFile : XML file of the Python file
+     * @param spanCache : span files of the XML files, null to parse the XML file
+     * @return
+     */
+    public static SourceFile read(String pythonFile, String xmlFile, SpanCache spanCache){
+        SourceIndex index = spanCache == null ? SourceIndex.build(readXML(xmlFile)) : spanCache.getIndex(xmlFile);
+        return new SourceFile(readPyFile(pythonFile), index);
+    }
+
+    public SourceText getLines(){return lines;}
+
+    public SourceIndex getIndex(){return index;}
+
+    /**
+     * return an estimation of the memory used by this file in bytes
+     * @return
+     */
+    public long estimateSize(){
+        return 64 + lines.estimateSize() + index.estimateSize();
+    }
+
+}
@@ -0,0 +1,387 @@
+package be.intimals.htmlviewer;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * index of the AST nodes of a source XML file, addressed by node ID
+ *
+ * the index is built in a single traversal of the XML document and stores,
+ * for every node ID, its position (LineNr, EndLineNr, ColNr, EndColNr),
+ * its leaf text, its dummy variable and the IDs of its element children.
+ *
+ * Once built, the index is a table of int records, one per node ID, a table of child IDs
+ * and a pool of UTF-8 strings. These tables can be written to a span file and mapped back,
+ * so that a source file is indexed once and only the records of the matched nodes are read.
+ */
+public class SourceIndex {
+
+    private static final int NODE = 1;       //an element with this ID exists
+    private static final int POSITION = 2;   //line and column numbers are available
+    private static final int LEAF = 4;       //the element has exactly one child node
+
+    private static final int NO_ID = -1;
+
+    //fields of a node record
+    private static final int FLAGS = 0;
+    private static final int LINE_NR = 1;
+    private static final int END_LINE_NR = 2;
+    private static final int COL_NR = 3;
+    private static final int END_COL_NR = 4;
+    private static final int CHILD_START = 5;
+    private static final int CHILD_COUNT = 6;
+    private static final int NAME = 7;       //string of the node name
+    private static final int TEXT = 8;       //string of the leaf text or of the dummy variable
+    private static final int RECORD_SIZE = 9;
+
+    private static final int MAGIC = 0x46525350; //"FRSP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    //number of node IDs: 0 .. capacity-1
+    private int capacity;
+    private IntBuffer records;
+    private IntBuffer childIDs;
+    //string i is stored in strings[stringStart[i] .. stringStart[i+1])
+    private IntBuffer stringStart;
+    private ByteBuffer strings;
+
+    //arrays of the nodes while the index is built
+    private int[] flags;
+    private int[] lineNr;
+    private int[] endLineNr;
+    private int[] colNr;
+    private int[] endColNr;
+    private String[] nodeName;
+    //trimmed text of leaf nodes, dummy variable of intermediate nodes
+    private String[] text;
+    //child lists of the nodes while the index is built
+    private int[] nbChildren;
+    private int[][] children;
+
+    private SourceIndex(){
+    }
+
+    private SourceIndex(int capacity){
+        flags = new int[capacity];
+        lineNr = new int[capacity];
+        endLineNr = new int[capacity];
+        colNr = new int[capacity];
+        endColNr = new int[capacity];
+        nodeName = new String[capacity];
+        text = new String[capacity];
+        nbChildren = new int[capacity];
+        children = new int[capacity][];
+    }
+
+    /**
+     * build the index of an XML document
+     * @param doc : parsed source XML file
+     * @return
+     */
+    public static SourceIndex build(Document doc){
+        SourceIndex index = new SourceIndex(64);
+        if(doc != null) index.addNode(doc.getDocumentElement());
+        index.freeze();
+        return index;
+    }
+
+    /**
+     * grow the arrays so that they can store node id
+     * @param id
+     */
+    private void ensureCapacity(int id){
+        if(id < flags.length) return;
+        int capacity = Math.max(id + 1, 2 * flags.length);
+        flags = Arrays.copyOf(flags, capacity);
+        lineNr = Arrays.copyOf(lineNr, capacity);
+        endLineNr = Arrays.copyOf(endLineNr, capacity);
+        colNr = Arrays.copyOf(colNr, capacity);
+        endColNr = Arrays.copyOf(endColNr, capacity);
+        nodeName = Arrays.copyOf(nodeName, capacity);
+        text = Arrays.copyOf(text, capacity);
+        nbChildren = Arrays.copyOf(nbChildren, capacity);
+        children = Arrays.copyOf(children, capacity);
+    }
+
+    /**
+     * store the nodes in the record table, the child lists in one array and the strings in a pool
+     */
+    private void freeze(){
+        capacity = flags.length;
+        int[] table = new int[capacity * RECORD_SIZE];
+        int total = 0;
+        for(int id = 0; id < capacity; ++id){
+            total += nbChildren[id];
+        }
+        int[] allChildren = new int[total];
+        //strings are stored once
+        Map<String, Integer> stringIDs = new HashMap<>();
+        List<byte[]> stringBytes = new ArrayList<>();
+        intern("", stringIDs, stringBytes);
+        total = 0;
+        for(int id = 0; id < capacity; ++id){
+            int r = id * RECORD_SIZE;
+            table[r + FLAGS] = flags[id];
+            table[r + LINE_NR] = lineNr[id];
+            table[r + END_LINE_NR] = endLineNr[id];
+            table[r + COL_NR] = colNr[id];
+            table[r + END_COL_NR] = endColNr[id];
+            table[r + CHILD_START] = total;
+            table[r + CHILD_COUNT] = nbChildren[id];
+            if(nbChildren[id] > 0) System.arraycopy(children[id], 0, allChildren, total, nbChildren[id]);
+            total += nbChildren[id];
+            table[r + NAME] = intern(nodeName[id], stringIDs, stringBytes);
+            table[r + TEXT] = intern(text[id], stringIDs, stringBytes);
+        }
+        int[] starts = new int[stringBytes.size() + 1];
+        for(int i = 0; i < stringBytes.size(); ++i){
+            starts[i + 1] = starts[i] + stringBytes.get(i).length;
+        }
+        byte[] pool = new byte[starts[stringBytes.size()]];
+        for(int i = 0; i < stringBytes.size(); ++i){
+            byte[] bytes = stringBytes.get(i);
+            System.arraycopy(bytes, 0, pool, starts[i], bytes.length);
+        }
+        records = IntBuffer.wrap(table);
+        childIDs = IntBuffer.wrap(allChildren);
+        stringStart = IntBuffer.wrap(starts);
+        strings = ByteBuffer.wrap(pool);
+        flags = lineNr = endLineNr = colNr = endColNr = nbChildren = null;
+        nodeName = text = null;
+        children = null;
+    }
+
+    /**
+     * return ID of a string in the pool, adding the string if it is not there yet
+     * @param value : string, null for ""
+     * @param stringIDs : IDs of the strings in the pool
+     * @param stringBytes : UTF-8 bytes of the strings in the pool
+     * @return
+     */
+    private static int intern(String value, Map<String, Integer> stringIDs, List<byte[]> stringBytes){
+        if(value == null) value = "";
+        Integer stringID = stringIDs.get(value);
+        if(stringID == null){
+            stringID = stringBytes.size();
+            stringIDs.put(value, stringID);
+            stringBytes.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return stringID;
+    }
+
+    /**
+     * write the index to a span file
+     * @param file : span file
+     * @param sourceStamp : size and modification time of the XML file, checked when the span file is read
+     * @throws IOException
+     */
+    public void write(File file, long sourceStamp) throws IOException {
+        int size = HEADER_SIZE + 4 * (records.capacity() + childIDs.capacity() + stringStart.capacity()) + strings.capacity();
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putLong(sourceStamp);
+        out.putInt(capacity).putInt(childIDs.capacity()).putInt(stringStart.capacity()).putInt(strings.capacity());
+        for(int i = 0; i < records.capacity(); ++i) out.putInt(records.get(i));
+        for(int i = 0; i < childIDs.capacity(); ++i) out.putInt(childIDs.get(i));
+        for(int i = 0; i < stringStart.capacity(); ++i) out.putInt(stringStart.get(i));
+        out.put(strings.duplicate());
+        out.flip();
+        //a temporary file of its own, so that threads writing the same span file don't mix their bytes
+        Path tmp = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), file.getName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)){
+                while(out.hasRemaining()) channel.write(out);
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * map a span file written by write
+     * @param file : span file
+     * @param sourceStamp : size and modification time of the XML file
+     * @return null if the span file does not exist, is corrupted or was written for another version of the XML file
+     */
+    public static SourceIndex map(File file, long sourceStamp){
+        if(!file.exists()) return null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != sourceStamp) return null;
+            SourceIndex index = new SourceIndex();
+            index.capacity = in.getInt();
+            int nbChildIDs = in.getInt();
+            int nbStringStarts = in.getInt();
+            int poolSize = in.getInt();
+            if(HEADER_SIZE + 4L * ((long) index.capacity * RECORD_SIZE + nbChildIDs + nbStringStarts) + poolSize != in.capacity()) return null;
+            in.position(HEADER_SIZE);
+            index.records = slice(in, 4 * index.capacity * RECORD_SIZE).asIntBuffer();
+            index.childIDs = slice(in, 4 * nbChildIDs).asIntBuffer();
+            index.stringStart = slice(in, 4 * nbStringStarts).asIntBuffer();
+            index.strings = slice(in, poolSize);
+            return index;
+        }catch (IOException | RuntimeException e){
+            return null;
+        }
+    }
+
+    /**
+     * return the next length bytes of a buffer as a new buffer
+     */
+    private static ByteBuffer slice(ByteBuffer in, int length){
+        ByteBuffer slice = in.slice();
+        slice.limit(length);
+        in.position(in.position() + length);
+        return slice;
+    }
+
+    private void addNode(Node node){
+        NodeList nodeList = node.getChildNodes();
+        int id = getID(node);
+        if(id != NO_ID){
+            ensureCapacity(id);
+            flags[id] |= NODE;
+            nodeName[id] = node.getNodeName();
+            if(nodeList.getLength() == 1){
+                flags[id] |= LEAF;
+                text[id] = node.getTextContent().trim();
+            }else{
+                text[id] = findDummyVariable(nodeList);
+            }
+            try{
+                Element element = (Element) node;
+                lineNr[id] = Integer.valueOf(element.getAttribute("LineNr"));
+                endLineNr[id] = Integer.valueOf(element.getAttribute("EndLineNr"));
+                colNr[id] = Integer.valueOf(element.getAttribute("ColNr"));
+                endColNr[id] = Integer.valueOf(element.getAttribute("EndColNr"));
+                flags[id] |= POSITION;
+            }catch (NumberFormatException e){
+                //node without line and column numbers
+            }
+        }
+        for(int i = 0; i < nodeList.getLength(); ++i){
+            Node child = nodeList.item(i);
+            if(child.getNodeType() == Node.ELEMENT_NODE){
+                if(id != NO_ID){
+                    if(children[id] == null) children[id] = new int[4];
+                    if(nbChildren[id] == children[id].length) children[id] = Arrays.copyOf(children[id], 2 * nbChildren[id]);
+                    children[id][nbChildren[id]++] = getID(child);
+                }
+                addNode(child);
+            }
+        }
+    }
+
+    /**
+     * find variable of a dummy node: the text of the last grandchild of its element children
+     * @param nodeList : children of the dummy node
+     * @return
+     */
+    private static String findDummyVariable(NodeList nodeList){
+        String dummy = "";
+        for(int i = 0; i < nodeList.getLength(); ++i){
+            if(nodeList.item(i).getNodeType() == Node.ELEMENT_NODE && nodeList.item(i).hasChildNodes()){
+                NodeList children = nodeList.item(i).getChildNodes();
+                for(int j = 0; j < children.getLength(); ++j){
+                    if(!children.item(j).getTextContent().equals("#text")){
+                        dummy = children.item(j).getTextContent().trim();
+                    }
+                }
+            }
+        }
+        return dummy;
+    }
+
+    private static int getID(Node node){
+        Node idNode = node.getAttributes().getNamedItem("ID");
+        if(idNode == null) return NO_ID;
+        try{
+            int id = Integer.valueOf(idNode.getNodeValue());
+            return id >= 0 ? id : NO_ID;
+        }catch (NumberFormatException e){
+            return NO_ID;
+        }
+    }
+
+    private int field(int id, int field){
+        return records.get(id * RECORD_SIZE + field);
+    }
+
+    private String string(int stringID){
+        int start = stringStart.get(stringID);
+        int end = stringStart.get(stringID + 1);
+        if(start == end) return "";
+        ByteBuffer bytes = strings.duplicate();
+        bytes.limit(end).position(start);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    private boolean has(int id, int flag){
+        return id >= 0 && id < capacity && (field(id, FLAGS) & flag) != 0;
+    }
+
+    public boolean contains(int id){return has(id, NODE);}
+
+    public boolean hasPosition(int id){return has(id, POSITION);}
+
+    public boolean isLeaf(int id){return has(id, LEAF);}
+
+    public int getLineNr(int id){return field(id, LINE_NR);}
+
+    public int getEndLineNr(int id){return field(id, END_LINE_NR);}
+
+    public int getColNr(int id){return field(id, COL_NR);}
+
+    public int getEndColNr(int id){return field(id, END_COL_NR);}
+
+    public String getNodeName(int id){return string(field(id, NAME));}
+
+    /**
+     * return trimmed text of a leaf node
+     * @param id
+     * @return
+     */
+    public String getText(int id){return isLeaf(id) ? string(field(id, TEXT)) : "";}
+
+    /**
+     * return variable of a dummy node, empty if the node has no dummy variable
+     * @param id
+     * @return
+     */
+    public String getDummyVariable(int id){return isLeaf(id) ? "" : string(field(id, TEXT));}
+
+    /**
+     * return an estimation of the memory used by the index in bytes, mapped span files included
+     * @return
+     */
+    public long estimateSize(){
+        return 64 + 4L * (records.capacity() + childIDs.capacity() + stringStart.capacity()) + strings.capacity();
+    }
+
+    public int countChildren(int id){return field(id, CHILD_COUNT);}
+
+    /**
+     * return ID of the k^th element child of a node, -1 if that child has no ID
+     * @param id
+     * @param k
+     * @return
+     */
+    public int getChild(int id, int k){return childIDs.get(field(id, CHILD_START) + k);}
+
+}
@@ -0,0 +1,68 @@
+package be.intimals.htmlviewer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * lines of a source file stored in one buffer with a table of line offsets
+ *
+ * line i is text[lineStart[i] .. lineEnd[i]), line terminators are "\n", "\r" and "\r\n"
+ * as for BufferedReader.readLine
+ */
+public class SourceText extends AbstractList<String> implements RandomAccess {
+
+    private final String text;
+    private final int[] lineStart;
+    private final int[] lineEnd;
+    private final int nbLines;
+
+    public SourceText(String text){
+        this.text = text;
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int count = 0;
+        int start = 0;
+        int length = text.length();
+        while(start < length){
+            int end = start;
+            while(end < length && text.charAt(end) != '\n' && text.charAt(end) != '\r') ++end;
+            if(count == starts.length){
+                starts = Arrays.copyOf(starts, 2 * count);
+                ends = Arrays.copyOf(ends, 2 * count);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            ++count;
+            //skip the line terminator
+            if(end < length && text.charAt(end) == '\r' && end + 1 < length && text.charAt(end + 1) == '\n') ++end;
+            start = end + 1;
+        }
+        this.lineStart = starts;
+        this.lineEnd = ends;
+        this.nbLines = count;
+    }
+
+    /**
+     * return line i (0-based) without its terminator
+     * @param i
+     * @return
+     */
+    @Override
+    public String get(int i){
+        if(i < 0 || i >= nbLines) throw new IndexOutOfBoundsException("line " + i + ", size " + nbLines);
+        return text.substring(lineStart[i], lineEnd[i]);
+    }
+
+    @Override
+    public int size(){return nbLines;}
+
+    /**
+     * return an estimation of the memory used by the text in bytes
+     * @return
+     */
+    public long estimateSize(){
+        return 64 + 2L * text.length() + 8L * lineStart.length;
+    }
+
+}
@@ -0,0 +1,117 @@
+package be.intimals.htmlviewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static be.intimals.htmlviewer.Utils.*;
+
+/**
+ * directory of span files: the index of the AST nodes of each source XML file
+ *
+ * a source XML file is parsed and indexed once, its index is written to a span file
+ * and mapped by the next uses, as long as size and modification time of the XML file don't change
+ */
+public class SpanCache {
+
+    private File dir;
+
+    private final AtomicLong mapped = new AtomicLong();
+    private final AtomicLong built = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    //one lock per span file, a span file is built by one thread while the others wait and map it
+    private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * @param dir : directory of the span files, created if it does not exist
+     */
+    public SpanCache(File dir){
+        this.dir = dir;
+        if(!dir.exists()) dir.mkdirs();
+    }
+
+    /**
+     * return span file of a source XML file
+     * @param xmlFile
+     * @return
+     */
+    private File spanFile(File xmlFile){
+        String name = getLastName(xmlFile.getPath());
+        //the hash of the path keeps apart XML files with the same name in different directories
+        String hash = new Fingerprint().add(xmlFile.getAbsolutePath()).toString();
+        return new File(dir, name.substring(0, name.length() - 4) + "_" + hash + ".spans");
+    }
+
+    /**
+     * return the index of a source XML file, mapped from its span file if it is up to date,
+     * otherwise built from the XML file and written to its span file
+     * @param xmlFileName
+     * @return
+     */
+    public SourceIndex getIndex(String xmlFileName){
+        File xmlFile = new File(xmlFileName);
+        long stamp = new Fingerprint().addFile(xmlFile).get();
+        File spanFile = spanFile(xmlFile);
+        SourceIndex index = SourceIndex.map(spanFile, stamp);
+        if(index == null){
+            synchronized (lock(spanFile)){
+                //another thread may have written the span file meanwhile
+                index = SourceIndex.map(spanFile, stamp);
+                if(index == null) return build(xmlFileName, spanFile, stamp);
+            }
+        }
+        mapped.incrementAndGet();
+        return index;
+    }
+
+    /**
+     * build the span file of a source XML file if it is missing or out of date
+     * @param xmlFileName
+     */
+    public void prepare(String xmlFileName){
+        File xmlFile = new File(xmlFileName);
+        long stamp = new Fingerprint().addFile(xmlFile).get();
+        File spanFile = spanFile(xmlFile);
+        if(SourceIndex.map(spanFile, stamp) != null) return;
+        synchronized (lock(spanFile)){
+            if(SourceIndex.map(spanFile, stamp) == null) build(xmlFileName, spanFile, stamp);
+        }
+    }
+
+    private Object lock(File spanFile){
+        return locks.computeIfAbsent(spanFile.getPath(), k -> new Object());
+    }
+
+    /**
+     * build the index of a source XML file and write it to its span file
+     * @param xmlFileName
+     * @param spanFile
+     * @param stamp : size and modification time of the XML file
+     * @return
+     */
+    private SourceIndex build(String xmlFileName, File spanFile, long stamp){
+        SourceIndex index = SourceIndex.build(readXML(xmlFileName));
+        built.incrementAndGet();
+        try {
+            index.write(spanFile, stamp);
+        }catch (IOException e){
+            failures.incrementAndGet();
+            e.printStackTrace();
+        }
+        return index;
+    }
+
+    public long getMapped(){return mapped.get();}
+
+    public long getBuilt(){return built.get();}
+
+    /**
+     * return a one-line summary of the span files used in this run
+     * @return
+     */
+    public String report(){
+        return "span files: " + mapped.get() + " mapped, " + built.get() + " built, " + failures.get() + " failures";
+    }
+
+}
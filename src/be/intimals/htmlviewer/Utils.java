@@ -1,12 +1,12 @@
 package be.intimals.htmlviewer;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -16,38 +16,29 @@ import static be.intimals.htmlviewer.Variables.*;
 public class Utils {
 
     /**
-     * return index of an identifier in a string
-     * @param inputString : input string
-     * @param identifier : identifier needed to find index
-     * @return
+     * create core html files
+     * @param output : writer of the html files
      */
-    public static int findIdentifierIndex(String inputString, String identifier){
-        int index = inputString.indexOf(identifier);
-        //identifier at the beginning of the line
-        if(index <= 0)
-            return 1;
-        //find true identifier: a string lies in between 2 non-alphabet characters
-        if(index + identifier.length() < inputString.length() &&
-                (Character.isAlphabetic(inputString.charAt(index-1)) ||
-                        Character.isAlphabetic(inputString.charAt(index+identifier.length())))){
-            index += findIdentifierIndex(inputString.substring(index+1, inputString.length()), identifier) + 1;
-        }else{
-            ++index;
+    public static void  initHTMLFiles(HtmlOutput output, String title){
+        for(Map.Entry<String, String> page : coreHTMLFiles(title).entrySet()){
+            output.write(page.getKey(), page.getValue());
         }
-        return index;
     }
 
-
     /**
-     * create core html files
-     * @param htmlDir : directory containing all html files
+     * return content of the core html files: the frameset, the pages shown before a selection,
+     * the style sheet and the script shared by all pages
+     * @param title : title of the frameset
+     * @return map from file name to content
      */
-    public static void  initHTMLFiles(String htmlDir, String title){
+    public static Map<String, String> coreHTMLFiles(String title){
+        Map<String, String> pages = new LinkedHashMap<>();
         //create index.html file
         String indexContent =
                 "<!DOCTYPE html>\n" +
                         "<html>   \n" +
                         "   <head>\n" +
+                        "      <meta charset=\"utf-8\">\n" +
                         "      <title>"+title+"</title>\n" +
                         "   </head>   \n" +
                         "   <frameset cols = \"15%,25%,25%,35%\">\n" +
@@ -60,43 +51,28 @@ public class Utils {
                         "      </noframes>\n" +
                         "   </frameset>   \n" +
                         "</html>";
-        String indexFile = htmlDir+"/_index.html";
-        writeHTML(indexFile, indexContent);
+        pages.put("_index.html", indexContent);
 
         //create matches.html file
         String matchesContent = HTMLHEADER+
                 "<p>Matches</p>\n" +
                 "\t   choose a pattern to show its matches\n" +
                 HTMLCLOSE;
-        String matchesFile = htmlDir+"/matches.html";
-        writeHTML(matchesFile, matchesContent);
+        pages.put("matches.html", matchesContent);
 
         //create sourcecode.html file
         String sourcecodeContent = HTMLHEADER+
                 "<p>Source code</p>\n" +
                 "\t  choose a match to show its source code"+
                 HTMLCLOSE;
-        String sourcecodeFile = htmlDir+"/sourcecode.html";
-        writeHTML(sourcecodeFile, sourcecodeContent);
-    }
+        pages.put("sourcecode.html", sourcecodeContent);
 
-
-    /**
-     * write new python code to html file
-     * @param fileName : file name
-     * @param content : content
-     */
-    public static void writeHTML(String fileName, String content){
-        try {
-            FileWriter file = new FileWriter(fileName);
-            file.write(content);
-            file.flush();
-            file.close();
-        }catch (Exception e){
-            e.printStackTrace();
-        }
+        pages.put("viewer.css", CSS_CONTENT);
+        pages.put("viewer.js", JS_CONTENT);
+        return pages;
     }
 
+
     /**
      * read xml file
      * @param fileName : name of input xml file
@@ -104,6 +80,7 @@ public class Utils {
      */
     public static Document readXML(String fileName){
         Document doc = null;
+        long start = System.nanoTime();
         try {
             File fXmlFile = new File(fileName);
             DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
@@ -112,6 +89,8 @@ public class Utils {
             doc.getDocumentElement().normalize();
         }catch (Exception e){
             e.printStackTrace();
+        }finally {
+            Metrics.time("xml.parse", start);
         }
         return doc;
     }
@@ -121,20 +100,17 @@ public class Utils {
      * @param fileName
      * @return
      */
-    public static List<String> readPyFile(String fileName){
-        List<String> results = new LinkedList<>();
+    public static SourceText readPyFile(String fileName){
+        long start = System.nanoTime();
         try {
-            Reader fileReader = new FileReader(fileName);
-            BufferedReader bufReader = new BufferedReader(fileReader);
-            String line = bufReader.readLine();
-            while( line != null){
-                results.add(line);
-                line = bufReader.readLine();
-            }
+            byte[] content = Files.readAllBytes(Paths.get(fileName));
+            return new SourceText(new String(content, StandardCharsets.UTF_8));
         }catch (Exception e){
             System.out.println("Read python file error");
+        }finally {
+            Metrics.time("source.read", start);
         }
-        return results;
+        return new SourceText("");
     }
 
     /**
@@ -148,37 +124,14 @@ public class Utils {
     }
 
     /**
-     * return full name of a match
-     * @param node :
+     * return file name of the full name of a match
+     * @param fullName : full name of the source file of a match
      * @return
      */
-    public static String getFileNameFromMatch(Node node){
-        String fullName = node.getAttributes().getNamedItem("FullName").getNodeValue();
+    public static String getFileName(String fullName){
         return Paths.get(fullName).getFileName().toString();
     }
 
-
-    /**
-     * find support of the pattern patternID
-     * @param patternID
-     * @param nodeList
-     * @return
-     */
-    public static String findSupport(int patternID, NodeList nodeList){
-        //find line number of a nodes
-        for(int i=0; i<nodeList.getLength(); ++i){
-            if(nodeList.item(i).getNodeType() == Node.ELEMENT_NODE) {
-                String id = nodeList.item(i).getAttributes().getNamedItem("id").getNodeValue();
-                //find line and col number of this id in the doc
-                if(id.equals(String.valueOf(patternID))){
-                    return nodeList.item(i).getAttributes().getNamedItem("support").getNodeValue();
-                }
-
-            }
-        }
-        return "0-0";
-    }
-
     /**
      * get config name from input result dir
      * @param directory
@@ -1,45 +1,34 @@
 package be.intimals.htmlviewer;
 
-import javax.print.attribute.standard.MediaSize;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 public class Variables {
-    public static final String numSep = "#";
-    public static final String strSep = ";";
-    public static final int nbAddedCharacters = 9;
-
     public static final String KEYCOLOR = "kc";
     public static final String VARCOLOR = "vc";
     public static final String DUMCOLOR = "dc";
     public static final String COMMENT = "cm";
 
 
-    // highlight selected link
-    private static String selectedLinkColorScript =
-            "<script>\n" +
-            "        $(document).ready(function () { \n" +
-            "            $('ul.navbar-nav > li') \n" +
-            "                    .click(function (e) { \n" +
-            "                $('ul.navbar-nav > li') \n" +
-            "                    .removeClass('active'); \n" +
-            "                $(this).addClass('active'); \n" +
-            "            }); \n" +
-            "        });\n " +
-            "</script>\n";
-
-    // select the first link
-    public static String selectTheFirstLinkScript =
-            "<script type=\"text/JavaScript\">\n" +
-            "       function activeLink(link){\n" +
-            "           if(document.getElementById)\n" +
-            "               document.getElementById(link).click();\n" +
-            "           else if (document.all)\n" +
-            "               document.all(link).focus();\n" +
-            "        }\n " +
-            "</script>\n";
+    // script shared by all pages, written once to viewer.js
+    public static final String JS_CONTENT =
+            // select the first link
+            "function activeLink(link){\n" +
+            "    var element = document.getElementById(link);\n" +
+            "    if(element) element.click();\n" +
+            "}\n" +
+            "\n" +
+            // highlight selected link
+            "document.addEventListener('DOMContentLoaded', function () {\n" +
+            "    var items = document.querySelectorAll('ul.navbar-nav > li');\n" +
+            "    for (var i = 0; i < items.length; ++i) {\n" +
+            "        items[i].addEventListener('click', function () {\n" +
+            "            for (var j = 0; j < items.length; ++j) items[j].classList.remove('active');\n" +
+            "            this.classList.add('active');\n" +
+            "        });\n" +
+            "    }\n" +
+            "});\n";
 
     // css link style
     private static String navigateLinkColor =
@@ -64,6 +53,20 @@ public class Variables {
             "            background-color: #C0C0C0; \n" +
             "            color: green; \n" +
             "        } \n" +
+            "  \n" +
+            "        /*columns of the single page viewer*/ \n" +
+            "        .single-page{ \n" +
+            "            display: flex; \n" +
+            "            margin: 0; \n" +
+            "        } \n" +
+            "  \n" +
+            "        .column{ \n" +
+            "            height: 100vh; \n" +
+            "            overflow: auto; \n" +
+            "            border-right: 1px solid #C0C0C0; \n" +
+            "        } \n" +
+            "  \n" +
+            "        #cluster{ width: 15%; } #left{ width: 25%; } #center{ width: 25%; } #right{ width: 35%; } \n" +
             "   \n";
 
 
@@ -92,31 +95,25 @@ public class Variables {
             // comment color
             "   cm{\n"+
             "       color: #0ED7AF;\n"+
+            "   }\n" +
+            // lines hidden between the context windows of a match
+            "   pre.gap{\n"+
+            "       color: #808080;\n"+
             "   }\n";
 
-    // css color
-    private static String cssContent =
-            "<style>\n" +
+    // style sheet shared by all pages, written once to viewer.css
+    public static final String CSS_CONTENT =
                     navigateLinkColor +
-                    highLightColor +
-            "</style>\n";
-
-
-    // scripts
-    public static String AJAXString =
-//            "<link rel = \"stylesheet\" href= \"https://cdnjs.cloudflare.com/ajax/libs/twitter-bootstrap/4.0.0-alpha.6/css/bootstrap.css\"/> \n" +
-            "<script src= \"https://ajax.googleapis.com/ajax/libs/jquery/2.1.1/jquery.min.js\"> </script> \n" +
-            "<script src=  \"https://npmcdn.com/tether@1.2.4/dist/js/tether.min.js\"> </script> \n" +
-            "<script src= \"https://cdnjs.cloudflare.com/ajax/libs/twitter-bootstrap/4.0.0-alpha.6/js/bootstrap.min.js\"> </script>\n"+
-                    selectedLinkColorScript +
-                    selectTheFirstLinkScript ;
+                    highLightColor;
 
     // html header
     public static final String HTMLHEADER = "<!DOCTYPE html>\n" +
             "<html>\n" +
             "   <head>\n" +
+            "      <meta charset=\"utf-8\">\n" +
             "      <title>HTML Frames</title>\n" +
-                    cssContent +
+            "      <link rel=\"stylesheet\" href=\"viewer.css\">\n" +
+            "      <script src=\"viewer.js\"></script>\n" +
             "   </head>\n" +
             "   <body onload = \"activeLink('act');\">\n";
 
@@ -127,5 +124,8 @@ public class Variables {
     private static String[] list = a.split(",");
     public static final Set<String> keywords = new HashSet<>(Arrays.asList(list));
 
+    // AST nodes highlighted as keywords on their whole line: Try, ExceptHandler
+    public static final Set<String> exceptionKeywords = new HashSet<>(Arrays.asList("Try","ExceptHandler"));
+
 
 }
@@ -0,0 +1,209 @@
+package be.intimals.htmlviewer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * options of the viewer given on the command line before SOURCE_DIR and RESULT_DIR
+ */
+public class ViewerOptions {
+
+    //memory budget of the cache of parsed source files
+    private long sourceCacheBytes = 256L << 20;
+    //number of threads rendering match pages
+    private int threads = Runtime.getRuntime().availableProcessors();
+    //write html files on a dedicated writer thread
+    private boolean asyncWrites = false;
+    //keep the pages whose inputs did not change since the previous run
+    private boolean incremental = false;
+    //read the result model from its binary snapshot when it is up to date
+    private boolean snapshot = true;
+    //directory of the span files of the source XML files, null for RESULT_DIR/.spans
+    private String spanDir = null;
+    //index the source XML files through span files
+    private boolean spanCache = true;
+    //write the data set of the single page viewer instead of one html file per list and per match
+    private boolean singlePage = false;
+    //write the pages to RESULT_DIR/html.pack instead of RESULT_DIR/html
+    private boolean pack = false;
+    //compress the pages of the pack file
+    private boolean packCompress = false;
+    //maximum number of entries of a list page, 0 for no limit
+    private int pageSize = 1000;
+    //number of lines shown around the matched lines of a match page, -1 for the whole file
+    private int context = -1;
+    //expose the metrics of the run through JMX
+    private boolean jmx = false;
+    //render pages on demand in an HTTP server instead of writing html files
+    private boolean serve = false;
+    //port of the HTTP server, 0 for any free port
+    private int port = 8080;
+    //memory budget of the cache of pages rendered by the HTTP server
+    private long pageCacheBytes = 64L << 20;
+
+    //positional arguments
+    private List<String> arguments = new ArrayList<>();
+
+    /**
+     * parse command line arguments
+     * @param args
+     * @return
+     * @throws IllegalArgumentException if an option is unknown or has a wrong value
+     */
+    public static ViewerOptions parse(String[] args){
+        ViewerOptions options = new ViewerOptions();
+        for(int i = 0; i < args.length; ++i){
+            String arg = args[i];
+            if(!arg.startsWith("--")){
+                options.arguments.add(arg);
+                continue;
+            }
+            switch (arg){
+                case "--cache-mb":
+                    options.sourceCacheBytes = parseInt(arg, value(args, ++i, arg)) * (1L << 20);
+                    break;
+                case "--threads":
+                    options.threads = Math.max(1, parseInt(arg, value(args, ++i, arg)));
+                    break;
+                case "--async-writes":
+                    options.asyncWrites = true;
+                    break;
+                case "--incremental":
+                    options.incremental = true;
+                    break;
+                case "--no-snapshot":
+                    options.snapshot = false;
+                    break;
+                case "--span-dir":
+                    options.spanDir = value(args, ++i, arg);
+                    break;
+                case "--no-span-cache":
+                    options.spanCache = false;
+                    break;
+                case "--single-page":
+                    options.singlePage = true;
+                    break;
+                case "--pack":
+                    options.pack = true;
+                    break;
+                case "--pack-compress":
+                    options.pack = true;
+                    options.packCompress = true;
+                    break;
+                case "--page-size":
+                    options.pageSize = parseInt(arg, value(args, ++i, arg));
+                    break;
+                case "--context":
+                    options.context = parseInt(arg, value(args, ++i, arg));
+                    break;
+                case "--jmx":
+                    options.jmx = true;
+                    break;
+                case "--serve":
+                    options.serve = true;
+                    break;
+                case "--port":
+                    options.port = parseInt(arg, value(args, ++i, arg));
+                    break;
+                case "--page-cache-mb":
+                    options.pageCacheBytes = parseInt(arg, value(args, ++i, arg)) * (1L << 20);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        if(options.pack && options.incremental && !options.serve){
+            throw new IllegalArgumentException("--incremental can't be used with --pack");
+        }
+        return options;
+    }
+
+    /**
+     * print the options
+     */
+    public static void printUsage(){
+        System.out.println("Options:");
+        System.out.println("--cache-mb N      memory budget in MB of the cache of parsed source files (default 256)");
+        System.out.println("--threads N       number of threads rendering match pages (default: number of processors)");
+        System.out.println("--async-writes    write html files on a dedicated writer thread");
+        System.out.println("--incremental     regenerate only the pages whose inputs changed since the previous run");
+        System.out.println("--no-snapshot     always parse the result files, without reading or writing the binary snapshot of the results");
+        System.out.println("--span-dir DIR    directory of the span files indexing the source XML files (default RESULT_DIR/.spans)");
+        System.out.println("--no-span-cache   parse the source XML files for each run, without span files");
+        System.out.println("--single-page     write a single page viewer with data files instead of one html file per list and per match");
+        System.out.println("--pack            write all pages to RESULT_DIR/html.pack instead of RESULT_DIR/html, with --serve serve the pages of this pack");
+        System.out.println("--pack-compress   same as --pack, with pages compressed by deflate");
+        System.out.println("--page-size N     maximum number of entries of a list of patterns, clusters or matches per page, 0 for no limit (default 1000)");
+        System.out.println("--context N       show only the matched lines with N lines around them and a link to the whole file (default: whole file)");
+        System.out.println("--jmx             expose the timers and counters of the run as the JMX MBean " + Metrics.MBEAN_NAME);
+        System.out.println("--serve           render pages on demand in an HTTP server on localhost instead of writing html files");
+        System.out.println("--port N          port of the HTTP server, 0 for any free port (default 8080)");
+        System.out.println("--page-cache-mb N memory budget in MB of the cache of pages rendered by the HTTP server (default 64)");
+    }
+
+    private static String value(String[] args, int i, String option){
+        if(i >= args.length) throw new IllegalArgumentException("missing value of " + option);
+        return args[i];
+    }
+
+    private static int parseInt(String option, String value){
+        try {
+            int result = Integer.valueOf(value);
+            if(result < 0) throw new IllegalArgumentException("negative value of " + option + ": " + value);
+            return result;
+        }catch (NumberFormatException e){
+            throw new IllegalArgumentException("wrong value of " + option + ": " + value);
+        }
+    }
+
+    public List<String> getArguments(){return arguments;}
+
+    public long getSourceCacheBytes(){return sourceCacheBytes;}
+
+    public int getThreads(){return threads;}
+
+    public boolean isAsyncWrites(){return asyncWrites;}
+
+    public boolean isIncremental(){return incremental;}
+
+    public boolean isSnapshot(){return snapshot;}
+
+    /**
+     * return the span files of the source XML files
+     * @param inputResultDir : directory containing results
+     * @return null if span files are disabled
+     */
+    public SpanCache createSpanCache(String inputResultDir){
+        if(!spanCache) return null;
+        return new SpanCache(new File(spanDir != null ? spanDir : inputResultDir + "/.spans"));
+    }
+
+    public boolean isSinglePage(){return singlePage;}
+
+    public boolean isPack(){return pack;}
+
+    public boolean isPackCompress(){return packCompress;}
+
+    /**
+     * return the pack file of a result directory
+     * @param inputResultDir : directory containing results
+     * @return
+     */
+    public File getPackFile(String inputResultDir){
+        return new File(inputResultDir, "html.pack");
+    }
+
+    public int getPageSize(){return pageSize;}
+
+    public int getContext(){return context;}
+
+    public boolean isJmx(){return jmx;}
+
+    public boolean isServe(){return serve;}
+
+    public int getPort(){return port;}
+
+    public long getPageCacheBytes(){return pageCacheBytes;}
+
+}
@@ -0,0 +1,293 @@
+package be.intimals.htmlviewer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.*;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static be.intimals.htmlviewer.Utils.*;
+
+/**
+ * HTTP server on localhost rendering the pages of a result directory on demand
+ *
+ * the result model is loaded once, a page is rendered the first time it is requested
+ * and kept in a cache of rendered pages bounded by a memory budget
+ */
+public class ViewerServer {
+
+    //list pages, followed by the number of the page after the first one
+    private static final Pattern LIST_PAGE = Pattern.compile("(patterns|clusters)(?:_p(\\d+))?\\.html");
+    private static final Pattern MATCHES_PAGE = Pattern.compile("pattern_(\\d+)_matches_(.+?)(?:_p(\\d+))?\\.html");
+    private static final Pattern MATCH_PAGE = Pattern.compile("patternID_(\\d+)_matchID_(\\d+)_(.+)\\.html");
+    private static final Pattern CLUSTER_PAGE = Pattern.compile("cluster_(\\d+)_patterns(?:_p(\\d+))?\\.html");
+
+    private String inputSourceDir;
+    private String inputResultDir;
+    private ViewerOptions options;
+
+    private ResultModel model;
+    private PageRenderer renderer;
+    //pages of the frameset which do not depend on the results
+    private Map<String, String> corePages;
+    //rendered pages, keyed by file name
+    private LruCache<String, byte[]> pageCache;
+    //parsed source files shared by all matches, keyed by Python file name
+    private LruCache<String, SourceFile> sourceCache;
+    //span files of the source XML files, null to parse the XML files
+    private SpanCache spanCache;
+    //pack file of a previous run serving the pages, null to render the pages
+    private PackReader pack;
+
+    private HttpServer server;
+    private ExecutorService workers;
+
+    public ViewerServer(File _inputSourceDir, File _inputResultDir, ViewerOptions options){
+        this.inputSourceDir = _inputSourceDir.getAbsolutePath();
+        this.inputResultDir = _inputResultDir.getAbsolutePath();
+        this.options = options;
+        this.pageCache = new LruCache<>("page cache", options.getPageCacheBytes(), page -> page.length);
+        this.sourceCache = new LruCache<>("source cache", options.getSourceCacheBytes(), SourceFile::estimateSize);
+        this.spanCache = options.createSpanCache(inputResultDir);
+    }
+
+    /**
+     * load the results, start the server and show patterns in web browser
+     */
+    public void view(){
+        try {
+            start();
+        }catch (Exception e){
+            e.printStackTrace();
+            return;
+        }
+        URI index = URI.create("http://localhost:" + server.getAddress().getPort() + "/_index.html");
+        System.out.println("serving " + inputResultDir + " at " + index);
+        try {
+            Desktop.getDesktop().browse(index);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * load the results and start the server
+     * @throws Exception
+     */
+    public void start() throws Exception {
+        Metrics.reset();
+        if(options.isJmx()) Metrics.registerMBean();
+        if(options.isPack()){
+            //serve the pages of the pack file, nothing is rendered
+            pack = new PackReader(options.getPackFile(inputResultDir));
+            System.out.println("pack file: " + pack.size() + " pages");
+            startServer();
+            return;
+        }
+        //read config file to find these information
+        long start = System.nanoTime();
+        String configFile = getConfigFileName(new File(inputResultDir));
+        Config config = new Config(configFile);
+        Metrics.time("config.load", start);
+        // read patterns, matches and clusters once for all pages
+        start = System.nanoTime();
+        model = options.isSnapshot()
+                ? ResultModel.loadCached(config, configFile, inputSourceDir, inputResultDir)
+                : ResultModel.load(config, inputSourceDir, inputResultDir);
+        Metrics.time("results.load", start);
+        renderer = new PageRenderer(model, getLastName(inputResultDir), sourceCache, spanCache, options.getPageSize(), options.getContext());
+        corePages = coreHTMLFiles(getLastName(inputResultDir));
+        startServer();
+    }
+
+    private void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.getPort()), 0);
+        server.createContext("/", this::handle);
+        workers = Executors.newFixedThreadPool(options.getThreads());
+        server.setExecutor(workers);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+    }
+
+    /**
+     * stop the server and print the cache usage
+     */
+    public void stop(){
+        if(server == null) return;
+        server.stop(0);
+        workers.shutdownNow();
+        server = null;
+        if(pack != null){
+            try {
+                pack.close();
+            }catch (IOException e){
+                e.printStackTrace();
+            }
+            return;
+        }
+        System.out.println(pageCache.report());
+        System.out.println(sourceCache.report());
+        if(spanCache != null) System.out.println(spanCache.report());
+        Metrics.setCache("pageCache", pageCache);
+        Metrics.setCache("sourceCache", sourceCache);
+        if(spanCache != null){
+            Metrics.set("spans.mapped", spanCache.getMapped());
+            Metrics.set("spans.built", spanCache.getBuilt());
+        }
+        System.out.println(Metrics.writeReports(new File(inputResultDir)));
+    }
+
+    /**
+     * answer a request with a rendered page
+     * @param exchange
+     * @throws IOException
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if(!method.equals("GET") && !method.equals("HEAD")){
+                sendError(exchange, 405, "method not allowed");
+                return;
+            }
+            String fileName = exchange.getRequestURI().getPath().substring(1);
+            if(fileName.isEmpty()) fileName = "_index.html";
+            byte[] page;
+            try {
+                page = pack != null ? pack.read(fileName) : pageCache.get(fileName, this::render);
+            }catch (IOException | RuntimeException e){
+                e.printStackTrace();
+                sendError(exchange, 500, "error rendering " + fileName);
+                return;
+            }
+            if(page == null){
+                sendError(exchange, 404, "unknown page " + fileName);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType(fileName));
+            if(method.equals("HEAD")){
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(page.length));
+                exchange.sendResponseHeaders(200, -1);
+            }else{
+                exchange.sendResponseHeaders(200, page.length);
+                exchange.getResponseBody().write(page);
+            }
+        }finally {
+            exchange.close();
+        }
+    }
+
+    private static String contentType(String fileName){
+        if(fileName.endsWith(".css")) return "text/css; charset=utf-8";
+        if(fileName.endsWith(".js")) return "text/javascript; charset=utf-8";
+        return "text/html; charset=utf-8";
+    }
+
+    private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * render a page from its file name
+     * @param fileName : name of the page in the html directory
+     * @return content of the page in UTF-8, null if there is no such page
+     */
+    private byte[] render(String fileName){
+        long start = System.nanoTime();
+        try {
+            return renderPage(fileName);
+        }finally {
+            Metrics.time("page.render", start);
+        }
+    }
+
+    private byte[] renderPage(String fileName){
+        String corePage = corePages.get(fileName);
+        if(corePage != null) return corePage.getBytes(StandardCharsets.UTF_8);
+        Matcher matcher = LIST_PAGE.matcher(fileName);
+        if(matcher.matches()){
+            int page = parsePage(matcher.group(2));
+            if(matcher.group(1).equals("patterns")){
+                if(page < 1 || page > renderer.countPatternsPages()) return null;
+                return render(out -> renderer.writePatternsPage(page, out));
+            }
+            if(page < 1 || page > renderer.countClustersPages()) return null;
+            return render(out -> renderer.writeClustersPage(page, out));
+        }
+        matcher = CLUSTER_PAGE.matcher(fileName);
+        if(matcher.matches()){
+            int clusterID = parseID(matcher.group(1));
+            int page = parsePage(matcher.group(2));
+            if(clusterID < 1 || clusterID > model.getClusters().size()) return null;
+            if(page < 1 || page > renderer.countClusterPages(clusterID)) return null;
+            return render(out -> renderer.writeClusterPage(clusterID, page, out));
+        }
+        matcher = MATCHES_PAGE.matcher(fileName);
+        if(matcher.matches()){
+            int patternID = parseID(matcher.group(1));
+            MatchSet matchSet = model.getMatchSet(matcher.group(2));
+            int page = parsePage(matcher.group(3));
+            if(patternID < 0 || matchSet == null) return null;
+            if(page < 1 || page > renderer.countMatchesPages(patternID, matchSet)) return null;
+            return render(out -> renderer.writeMatchesPage(patternID, matchSet, page, out));
+        }
+        matcher = MATCH_PAGE.matcher(fileName);
+        if(matcher.matches()){
+            int patternID = parseID(matcher.group(1));
+            int count = parseID(matcher.group(2));
+            MatchSet matchSet = model.getMatchSet(matcher.group(3));
+            if(patternID < 0 || matchSet == null || count < 1 || count > matchSet.countMatches(patternID)) return null;
+            return render(out -> renderer.writeMatchPage(patternID, count, matchSet, out));
+        }
+        return null;
+    }
+
+    private static byte[] render(HtmlOutput.PageContent content){
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+            Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+            content.writeTo(out);
+            out.close();
+            return bytes.toByteArray();
+        }catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * parse the number of a page of a list, 1 for the first page whose name has no number
+     * @param value : number of the page, null for the first page
+     * @return
+     */
+    private static int parsePage(String value){
+        //the first page has no number: _p1 is not a page name
+        if(value == null) return 1;
+        int page = parseID(value);
+        return page > 1 ? page : -1;
+    }
+
+    /**
+     * parse a number of a page name, -1 if it is too large
+     * @param value
+     * @return
+     */
+    private static int parseID(String value){
+        try {
+            return Integer.valueOf(value);
+        }catch (NumberFormatException e){
+            return -1;
+        }
+    }
+
+}